@@ -17,25 +17,50 @@ package co.cutely.solitaire;
 
 import android.graphics.Canvas;
 
-public class AnimateCard {
+public class AnimateCard implements CardAnimator {
 
     private static final float PPF = 40;
 
     protected SolitaireView mView;
-    private Card[] mCard;
-    private CardAnchor mCardAnchor;
+    private int[] mCard;
+    private float[] mX;
+    private float[] mY;
+    // Where each card is going and how far it goes each frame
+    private CardAnchor[] mTo;
+    private float[] mDx;
+    private float[] mDy;
     private int mCount;
     private int mFrames;
-    private float mDx;
-    private float mDy;
     private boolean mAnimate;
     private Runnable mCallback;
+    private int mOriginCard;
+    private float mOriginX;
+    private float mOriginY;
+    // How many times PPF cards travel, see SetSpeed
+    private float mSpeed;
 
     public AnimateCard(final SolitaireView view) {
         mView = view;
         mAnimate = false;
-        mCard = new Card[104];
+        mCard = new int[104];
+        mX = new float[104];
+        mY = new float[104];
+        mTo = new CardAnchor[104];
+        mDx = new float[104];
+        mDy = new float[104];
         mCallback = null;
+        mOriginCard = Card.NONE;
+        mSpeed = 1;
+    }
+
+    // Replay speeds cards up (or slows them down), everything else leaves it
+    // at 1.
+    public void SetSpeed(final float speed) {
+        mSpeed = speed;
+    }
+
+    public float GetSpeed() {
+        return mSpeed;
     }
 
     public boolean GetAnimate() {
@@ -45,10 +70,11 @@ public class AnimateCard {
     public void Draw(final DrawMaster drawMaster, final Canvas canvas) {
         if (mAnimate) {
             for (int j = 0; j < mCount; j++) {
-                mCard[j].MovePosition(-mDx, -mDy);
+                mX[j] += mDx[j];
+                mY[j] += mDy[j];
             }
             for (int i = 0; i < mCount; i++) {
-                drawMaster.DrawCard(canvas, mCard[i]);
+                drawMaster.DrawCard(canvas, mCard[i], mX[i], mY[i]);
             }
             mFrames--;
             if (mFrames <= 0) {
@@ -58,42 +84,95 @@ public class AnimateCard {
         }
     }
 
-    public void MoveCards(final Card[] card, final CardAnchor anchor, final int count, final Runnable callback) {
+    // cardX and cardY are where each card starts from.
+    public void MoveCards(final int[] card, final float[] cardX, final float[] cardY, final CardAnchor anchor, final int count, final Runnable callback) {
         float x = anchor.GetX();
         float y = anchor.GetNewY();
-        mCardAnchor = anchor;
         mCallback = callback;
         mAnimate = true;
 
         for (int i = 0; i < count; i++) {
             mCard[i] = card[i];
+            mX[i] = cardX[i];
+            mY[i] = cardY[i];
+            mTo[i] = anchor;
         }
         mCount = count;
-        Move(mCard[0], x, y);
+        Move(x, y);
     }
 
-    public void MoveCard(final Card card, final CardAnchor anchor) {
-        float x = anchor.GetX();
-        float y = anchor.GetNewY();
-        mCardAnchor = anchor;
+    // Every card flies to its own anchor, all at the same time, landing
+    // together in the order given.
+    public void MoveCards(final int[] card, final float[] cardX, final float[] cardY, final CardAnchor[] to, final int count) {
+        MoveCards(card, cardX, cardY, to, count, null);
+    }
+
+    // The same, with callback run once they've all landed.
+    public void MoveCards(final int[] card, final float[] cardX, final float[] cardY, final CardAnchor[] to, final int count, final Runnable callback) {
+        mCallback = callback;
+        mAnimate = true;
+
+        mFrames = 1;
+        for (int i = 0; i < count; i++) {
+            mCard[i] = card[i];
+            mX[i] = cardX[i];
+            mY[i] = cardY[i];
+            mTo[i] = to[i];
+            float dx = to[i].GetX() - mX[i];
+            float dy = to[i].GetNewY() - mY[i];
+            mFrames = Math.max(mFrames, Math.round((float) Math.sqrt(dx * dx + dy * dy) / (PPF * mSpeed)));
+        }
+        for (int i = 0; i < count; i++) {
+            mDx[i] = (to[i].GetX() - mX[i]) / mFrames;
+            mDy[i] = (to[i].GetNewY() - mY[i]) / mFrames;
+        }
+        mOriginCard = Card.NONE;
+        mCount = count;
+
+        mView.StartAnimating();
+    }
+
+    // A flung card is already off its anchor and under the finger, so if the
+    // rules end up moving it, it should fly from there.
+    public void setFlingOrigin(final int card, final float x, final float y) {
+        mOriginCard = card;
+        mOriginX = x;
+        mOriginY = y;
+    }
+
+    public void MoveCard(final int card, final CardAnchor from, final CardAnchor to) {
+        float x = to.GetX();
+        float y = to.GetNewY();
+        mTo[0] = to;
         mCallback = null;
         mAnimate = true;
 
         mCard[0] = card;
+        if (card == mOriginCard) {
+            mX[0] = mOriginX;
+            mY[0] = mOriginY;
+        } else {
+            // The card has already been popped, so it starts from the spot it left.
+            mX[0] = from.getCardX(from.GetCount());
+            mY[0] = from.getCardY(from.GetCount());
+        }
+        mOriginCard = Card.NONE;
         mCount = 1;
-        Move(card, x, y);
+        Move(x, y);
     }
 
-    private void Move(final Card card, final float x, final float y) {
-        float dx = x - card.GetX();
-        float dy = y - card.GetY();
+    private void Move(final float x, final float y) {
+        float dx = x - mX[0];
+        float dy = y - mY[0];
 
-        mFrames = Math.round((float) Math.sqrt(dx * dx + dy * dy) / PPF);
+        mFrames = Math.round((float) Math.sqrt(dx * dx + dy * dy) / (PPF * mSpeed));
         if (mFrames == 0) {
             mFrames = 1;
         }
-        mDx = dx / mFrames;
-        mDy = dy / mFrames;
+        for (int i = 0; i < mCount; i++) {
+            mDx[i] = dx / mFrames;
+            mDy[i] = dy / mFrames;
+        }
 
         mView.StartAnimating();
         if (!mAnimate) {
@@ -103,10 +182,9 @@ public class AnimateCard {
 
     private void Finish() {
         for (int i = 0; i < mCount; i++) {
-            mCardAnchor.AddCard(mCard[i]);
-            mCard[i] = null;
+            mTo[i].AddCard(mCard[i]);
+            mTo[i] = null;
         }
-        mCardAnchor = null;
         mView.DrawBoard();
         if (mCallback != null) {
             mCallback.run();
@@ -116,10 +194,9 @@ public class AnimateCard {
     public void Cancel() {
         if (mAnimate) {
             for (int i = 0; i < mCount; i++) {
-                mCardAnchor.AddCard(mCard[i]);
-                mCard[i] = null;
+                mTo[i].AddCard(mCard[i]);
+                mTo[i] = null;
             }
-            mCardAnchor = null;
             mAnimate = false;
         }
     }
@@ -33,10 +33,10 @@ class Card {
     public static int WIDTH = 45;
     public static int HEIGHT = 64;
 
-    private int mValue;
-    private int mSuit;
-    private float mX;
-    private float mY;
+    // A card is just its face, suit * 13 + value - 1, which fits in a byte and
+    // is also the index of its face in DrawMaster's bitmaps. Nothing else about
+    // a card needs storing, where it's drawn belongs to whatever is holding it.
+    public static final int NONE = -1;
 
     public static void SetSize(final int type) {
         if (type == Rules.SOLITAIRE) {
@@ -51,44 +51,22 @@ class Card {
         }
     }
 
-    public Card(final int value, final int suit) {
-        mValue = value;
-        mSuit = suit;
-        mX = 1;
-        mY = 1;
+    private Card() {
     }
 
-    public float GetX() {
-        return mX;
+    public static int make(final int value, final int suit) {
+        return suit * KING + value - 1;
     }
 
-    public float getCenterX() {
-        return mX + (WIDTH / 2);
+    public static int GetValue(final int card) {
+        return card % KING + 1;
     }
 
-    public float getMoveY() {
-        return mY + (HEIGHT * 2f / 3f);
+    public static int GetSuit(final int card) {
+        return card / KING;
     }
 
-    public float GetY() {
-        return mY;
-    }
-
-    public int GetValue() {
-        return mValue;
-    }
-
-    public int GetSuit() {
-        return mSuit;
-    }
-
-    public void SetPosition(final float x, final float y) {
-        mX = x;
-        mY = y;
-    }
-
-    public void MovePosition(final float dx, final float dy) {
-        mX -= dx;
-        mY -= dy;
+    public static boolean isRed(final int card) {
+        return (GetSuit(card) & 1) == 1;
     }
 }
@@ -15,8 +15,6 @@
  */
 package co.cutely.solitaire;
 
-import android.graphics.Canvas;
-
 class CardAnchor {
 
     public static final int MAX_CARDS = 104;
@@ -30,12 +28,17 @@ class CardAnchor {
     public static final int GENERIC_ANCHOR = 8;
 
     private int mNumber;
+    private int mType;
     protected Rules mRules;
     protected float mX;
     protected float mY;
-    protected Card[] mCard;
+    protected byte[] mCard;
     protected int mCardCount;
     protected int mHiddenCount;
+    // mRun[i] is how many cards, counting down from card i, could be picked up
+    // together if they were face up (see follows). It's kept up to date as
+    // cards come and go, so the movable count never has to scan the stack.
+    protected byte[] mRun;
     protected float mLeftEdge;
     protected float mRightEdge;
     protected float mBottom;
@@ -53,6 +56,10 @@ class CardAnchor {
     protected int mPICKUP;
     protected int mDISPLAY;
     protected int mHACK;
+    // The build and move rules compiled into tables, see GenericAnchor. Any
+    // change to the rules throws them away.
+    protected long[] mBuildTable;
+    protected long[] mMoveTable;
 
     // ==========================================================================
     // Create a CardAnchor
@@ -87,13 +94,15 @@ class CardAnchor {
         }
         ret.SetRules(rules);
         ret.SetNumber(number);
+        ret.mType = type;
         return ret;
     }
 
     public CardAnchor() {
         mX = 1;
         mY = 1;
-        mCard = new Card[MAX_CARDS];
+        mCard = new byte[MAX_CARDS];
+        mRun = new byte[MAX_CARDS];
         mCardCount = 0;
         mHiddenCount = 0;
         mLeftEdge = -1;
@@ -106,10 +115,18 @@ class CardAnchor {
     // ==========================================================================
     // Getters and Setters
     // -------------------
-    public Card[] GetCards() {
+    public byte[] GetCards() {
         return mCard;
     }
 
+    public int getCard(final int idx) {
+        return mCard[idx];
+    }
+
+    public int getTopCard() {
+        return mCardCount > 0 ? mCard[mCardCount - 1] : Card.NONE;
+    }
+
     public int GetCount() {
         return mCardCount;
     }
@@ -126,6 +143,11 @@ class CardAnchor {
         return mNumber;
     }
 
+    // What CreateAnchor made this as, DEAL_FROM and so on.
+    public int GetType() {
+        return mType;
+    }
+
     public float GetRightEdge() {
         return mRightEdge;
     }
@@ -138,6 +160,19 @@ class CardAnchor {
         return mCardCount > 0 ? 1 : 0;
     }
 
+    // Length of the run on top of the stack, before hidden cards or any other
+    // limit on moving it.
+    public int getRun() {
+        return mCardCount > 0 ? mRun[mCardCount - 1] : 0;
+    }
+
+    // Whether the stack ends in a whole King to Ace run, face up, as Spider
+    // takes off. A run can't go on past an ace, so an ace on top with 13 in
+    // its run is all there is to check.
+    public boolean isRunDone() {
+        return Card.GetValue(getTopCard()) == 1 && Math.min(getRun(), GetVisibleCount()) == 13;
+    }
+
     public float GetX() {
         return mX;
     }
@@ -146,6 +181,16 @@ class CardAnchor {
         return mY;
     }
 
+    // Where the card at idx is drawn. Cards don't remember their own position,
+    // it's worked out from the layout whenever someone asks.
+    public float getCardX(final int idx) {
+        return mX;
+    }
+
+    public float getCardY(final int idx) {
+        return mY;
+    }
+
     public boolean IsDone() {
         return mDone;
     }
@@ -154,7 +199,10 @@ class CardAnchor {
         mBottom = edge;
     }
 
+    // Every change to the hidden count goes through here to keep the hash right.
     public void SetHiddenCount(final int count) {
+        mRules.toggleHash(Zobrist.hidden(mNumber, mHiddenCount) ^ Zobrist.hidden(mNumber, count));
+        mRules.anchorChanged(mNumber);
         mHiddenCount = count;
     }
 
@@ -180,10 +228,6 @@ class CardAnchor {
     public void SetShowing(final int showing) {
     }
 
-    protected void SetCardPosition(final int idx) {
-        mCard[idx].SetPosition(mX, mY);
-    }
-
     public void SetDone(final boolean done) {
         mDone = done;
     }
@@ -196,23 +240,33 @@ class CardAnchor {
     public void SetSeq(final int seq) {
         mBUILDSEQ = seq;
         mMOVESEQ = seq;
+        mBuildTable = null;
+        mMoveTable = null;
+        rebuildRuns();
     }
 
     public void SetBuildSeq(final int buildseq) {
         mBUILDSEQ = buildseq;
+        mBuildTable = null;
     }
 
     public void SetMoveSeq(final int moveseq) {
         mMOVESEQ = moveseq;
+        mMoveTable = null;
+        rebuildRuns();
     }
 
     public void SetWrap(final boolean wrap) {
         mBUILDWRAP = wrap;
         mMOVEWRAP = wrap;
+        mMoveTable = null;
+        rebuildRuns();
     }
 
     public void SetMoveWrap(final boolean movewrap) {
         mMOVEWRAP = movewrap;
+        mMoveTable = null;
+        rebuildRuns();
     }
 
     public void SetBuildWrap(final boolean buildwrap) {
@@ -222,14 +276,20 @@ class CardAnchor {
     public void SetSuit(final int suit) {
         mBUILDSUIT = suit;
         mMOVESUIT = suit;
+        mBuildTable = null;
+        mMoveTable = null;
+        rebuildRuns();
     }
 
     public void SetBuildSuit(final int buildsuit) {
         mBUILDSUIT = buildsuit;
+        mBuildTable = null;
     }
 
     public void SetMoveSuit(final int movesuit) {
         mMOVESUIT = movesuit;
+        mMoveTable = null;
+        rebuildRuns();
     }
 
     public void SetBehavior(final int beh) {
@@ -258,55 +318,94 @@ class CardAnchor {
     public void SetPosition(final float x, final float y) {
         mX = x;
         mY = y;
-        for (int i = 0; i < mCardCount; i++) {
-            SetCardPosition(i);
-        }
     }
 
     // ==========================================================================
     // Functions to add cards
     // ----------------------
-    public void AddCard(final Card card) {
-        mCard[mCardCount++] = card;
-        SetCardPosition(mCardCount - 1);
+    public void AddCard(final int card) {
+        mRules.toggleHash(Zobrist.card(mNumber, mCardCount, card));
+        mRules.anchorChanged(mNumber);
+        mRun[mCardCount] = (byte) (mCardCount > 0 && follows(mCard[mCardCount - 1], card) ? mRun[mCardCount - 1] + 1 : 1);
+        mCard[mCardCount++] = (byte) card;
     }
 
-    public void AddMoveCard(final MoveCard moveCard) {
-        int count = moveCard.GetCount();
-        Card[] cards = moveCard.DumpCards();
+    // Whether upper can be picked up along with lower, the card under it.
+    protected boolean follows(final int lower, final int upper) {
+        return false;
+    }
+
+    protected void rebuildRuns() {
+        for (int i = 0; i < mCardCount; i++) {
+            mRun[i] = (byte) (i > 0 && follows(mCard[i - 1], mCard[i]) ? mRun[i - 1] + 1 : 1);
+        }
+    }
 
-        for (int i = 0; i < count; i++) {
-            AddCard(cards[i]);
+    // Swaps in a whole stack at once, without any of the events AddCard posts.
+    public void setCards(final byte[] card, final int offset, final int count, final int hidden) {
+        long hash = 0;
+        for (int i = 0; i < mCardCount; i++) {
+            hash ^= Zobrist.card(mNumber, i, mCard[i]);
+        }
+        System.arraycopy(card, offset, mCard, 0, count);
+        mCardCount = count;
+        for (int i = 0; i < mCardCount; i++) {
+            hash ^= Zobrist.card(mNumber, i, mCard[i]);
         }
+        rebuildRuns();
+        mRules.toggleHash(hash);
+        mRules.anchorChanged(mNumber);
+        SetHiddenCount(hidden);
     }
 
-    public boolean DropSingleCard(final Card card) {
+    public boolean DropSingleCard(final int card) {
         return false;
     }
 
-    public boolean CanDropCard(final MoveCard moveCard, final int close) {
+    // card is the bottom card of the count being dropped, x and y are where
+    // it's currently drawn on the screen.
+    public boolean CanDropCard(final int card, final int count, final float x, final float y, final int close) {
+        return IsOverCard(x + Card.WIDTH / 2, y + Card.HEIGHT / 2, close) && canDrop(card, count);
+    }
+
+    // The rules half of CanDropCard, without caring where anything is.
+    public boolean canDrop(final int card, final int count) {
         return false;
     }
 
     // ==========================================================================
     // Functions to take cards
     // -----------------------
-    public Card[] GetCardStack() {
-        return null;
+    // How many cards GetCardStack would take.
+    public int getStackCount() {
+        return 0;
+    }
+
+    public int[] GetCardStack() {
+        int count = getStackCount();
+        if (count == 0) {
+            return null;
+        }
+        int[] ret = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            ret[i] = PopCard();
+        }
+        return ret;
     }
 
-    public Card GrabCard(final float x, final float y) {
-        Card ret = null;
+    public int GrabCard(final float x, final float y) {
+        int ret = Card.NONE;
         if (mCardCount > 0 && IsOverCard(x, y)) {
             ret = PopCard();
         }
         return ret;
     }
 
-    public Card PopCard() {
-        Card ret = mCard[--mCardCount];
-        mCard[mCardCount] = null;
-        return ret;
+    public int PopCard() {
+        int card = mCard[--mCardCount];
+        mRules.toggleHash(Zobrist.card(mNumber, mCardCount, card));
+        mRules.anchorChanged(mNumber);
+        return card;
     }
 
     // ==========================================================================
@@ -318,7 +417,7 @@ class CardAnchor {
 
     public boolean UnhideTopCard() {
         if (mCardCount > 0 && mHiddenCount > 0 && mHiddenCount == mCardCount) {
-            mHiddenCount--;
+            SetHiddenCount(mHiddenCount - 1);
             return true;
         }
         return false;
@@ -336,11 +435,11 @@ class CardAnchor {
     // Functions to check locations
     // ----------------------------
     private boolean IsOver(final float x, final float y, final boolean deck, final int close) {
-        float clx = mCardCount == 0 ? mX : mCard[mCardCount - 1].GetX();
+        float clx = mCardCount == 0 ? mX : getCardX(mCardCount - 1);
         float leftX = mLeftEdge == -1 ? clx : mLeftEdge;
         float rightX = mRightEdge == -1 ? clx + Card.WIDTH : mRightEdge;
-        float topY = (mCardCount == 0 || deck) ? mY : mCard[mCardCount - 1].GetY();
-        float botY = mCardCount > 0 ? mCard[mCardCount - 1].GetY() : mY;
+        float topY = (mCardCount == 0 || deck) ? mY : getCardY(mCardCount - 1);
+        float botY = mCardCount > 0 ? getCardY(mCardCount - 1) : mY;
         botY += Card.HEIGHT;
 
         leftX -= close * Card.WIDTH / 2;
@@ -372,11 +471,11 @@ class CardAnchor {
     // ==========================================================================
     // Functions to Draw
     // ----------------------------
-    public void Draw(final DrawMaster drawMaster, final Canvas canvas) {
+    public void Draw(final CardRenderer renderer) {
         if (mCardCount == 0) {
-            drawMaster.DrawEmptyAnchor(canvas, mX, mY, mDone);
+            renderer.DrawEmptyAnchor(mX, mY, mDone);
         } else {
-            drawMaster.DrawCard(canvas, mCard[mCardCount - 1]);
+            renderer.DrawCard(mCard[mCardCount - 1], mX, mY);
         }
     }
 }
@@ -396,47 +495,28 @@ class DealTo extends CardAnchor {
     }
 
     @Override
-    protected void SetCardPosition(final int idx) {
-        if (mShowing == 1) {
-            mCard[idx].SetPosition(mX, mY);
-        } else {
-            if (idx < mCardCount - mShowing) {
-                mCard[idx].SetPosition(mX, mY);
-            } else {
-                int offset = mCardCount - mShowing;
-                offset = offset < 0 ? 0 : offset;
-                mCard[idx].SetPosition(mX + (idx - offset) * Card.WIDTH / 2, mY);
-            }
+    public float getCardX(final int idx) {
+        if (mShowing == 1 || idx < mCardCount - mShowing) {
+            return mX;
         }
-    }
-
-    @Override
-    public void AddCard(final Card card) {
-        super.AddCard(card);
-        SetPosition(mX, mY);
+        int offset = mCardCount - mShowing;
+        offset = offset < 0 ? 0 : offset;
+        return mX + (idx - offset) * Card.WIDTH / 2;
     }
 
     @Override
     public boolean UnhideTopCard() {
-        SetPosition(mX, mY);
         return false;
     }
 
     @Override
-    public Card PopCard() {
-        Card ret = super.PopCard();
-        SetPosition(mX, mY);
-        return ret;
-    }
-
-    @Override
-    public void Draw(final DrawMaster drawMaster, final Canvas canvas) {
+    public void Draw(final CardRenderer renderer) {
         if (mCardCount == 0) {
-            drawMaster.DrawEmptyAnchor(canvas, mX, mY, mDone);
+            renderer.DrawEmptyAnchor(mX, mY, mDone);
         } else {
             for (int i = mCardCount - mShowing; i < mCardCount; i++) {
                 if (i >= 0) {
-                    drawMaster.DrawCard(canvas, mCard[i]);
+                    renderer.DrawCard(mCard[i], getCardX(i), mY);
                 }
             }
         }
@@ -462,8 +542,6 @@ class SeqStack extends CardAnchor {
     @Override
     public void SetMaxHeight(final int maxHeight) {
         mMaxHeight = maxHeight;
-        CheckSizing();
-        SetPosition(mX, mY);
     }
 
     // This can't be a constant as Card.HEIGHT isn't constant.
@@ -472,45 +550,20 @@ class SeqStack extends CardAnchor {
     }
 
     @Override
-    protected void SetCardPosition(final int idx) {
+    public float getCardY(final int idx) {
+        CheckSizing();
         if (idx < mHiddenCount) {
-            if (mHideHidden) {
-                mCard[idx].SetPosition(mX, mY);
-            } else {
-                mCard[idx].SetPosition(mX, mY + HIDDEN_SPACING * idx);
-            }
-        } else {
-            int startY = mHideHidden ? HIDDEN_SPACING : mHiddenCount * HIDDEN_SPACING;
-            int y = (int) mY + startY + (idx - mHiddenCount) * mSpacing;
-            mCard[idx].SetPosition(mX, y);
+            return mHideHidden ? mY : mY + HIDDEN_SPACING * idx;
         }
-    }
-
-    @Override
-    public void SetHiddenCount(final int count) {
-        super.SetHiddenCount(count);
-        CheckSizing();
-        SetPosition(mX, mY);
-    }
-
-    @Override
-    public void AddCard(final Card card) {
-        super.AddCard(card);
-        CheckSizing();
-    }
-
-    @Override
-    public Card PopCard() {
-        Card ret = super.PopCard();
-        CheckSizing();
-        return ret;
+        int startY = mHideHidden ? HIDDEN_SPACING : mHiddenCount * HIDDEN_SPACING;
+        return (int) mY + startY + (idx - mHiddenCount) * mSpacing;
     }
 
     @Override
     public boolean ExpandStack(final float x, final float y) {
         if (IsOverDeck(x, y)) {
             if (mHiddenCount >= mCardCount) {
-                mHiddenCount = mCardCount == 0 ? 0 : mCardCount - 1;
+                SetHiddenCount(mCardCount == 0 ? 0 : mCardCount - 1);
             } else if (mCardCount - mHiddenCount > 1) {
                 return true;
             }
@@ -524,20 +577,22 @@ class SeqStack extends CardAnchor {
     }
 
     @Override
-    public void Draw(final DrawMaster drawMaster, final Canvas canvas) {
+    public void Draw(final CardRenderer renderer) {
         if (mCardCount == 0) {
-            drawMaster.DrawEmptyAnchor(canvas, mX, mY, mDone);
+            renderer.DrawEmptyAnchor(mX, mY, mDone);
         } else {
             for (int i = 0; i < mCardCount; i++) {
                 if (i < mHiddenCount) {
-                    drawMaster.DrawHiddenCard(canvas, mCard[i]);
+                    renderer.DrawHiddenCard(mX, getCardY(i));
                 } else {
-                    drawMaster.DrawCard(canvas, mCard[i]);
+                    renderer.DrawCard(mCard[i], mX, getCardY(i));
                 }
             }
         }
     }
 
+    // Only layout depends on this, so it's worked out when a position is
+    // asked for rather than every time a card comes or goes.
     private void CheckSizing() {
         if (mCardCount < 2 || mCardCount - mHiddenCount < 2) {
             mSpacing = GetMaxSpacing();
@@ -560,10 +615,7 @@ class SeqStack extends CardAnchor {
                 spacing = GetMaxSpacing();
             }
         }
-        if (spacing != mSpacing) {
-            mSpacing = spacing;
-            SetPosition(mX, mY);
-        }
+        mSpacing = spacing;
     }
 
     @Override
@@ -571,7 +623,7 @@ class SeqStack extends CardAnchor {
         if (mCardCount == 0) {
             return mY;
         }
-        return mCard[mCardCount - 1].GetY() + mSpacing;
+        return getCardY(mCardCount - 1) + mSpacing;
     }
 }
 
@@ -579,8 +631,13 @@ class SeqStack extends CardAnchor {
 class DealFrom extends CardAnchor {
 
     @Override
-    public Card GrabCard(final float x, final float y) {
-        return null;
+    public int GrabCard(final float x, final float y) {
+        return Card.NONE;
+    }
+
+    @Override
+    public int GetMovableCount() {
+        return 0;
     }
 
     @Override
@@ -593,11 +650,11 @@ class DealFrom extends CardAnchor {
     }
 
     @Override
-    public void Draw(final DrawMaster drawMaster, final Canvas canvas) {
+    public void Draw(final CardRenderer renderer) {
         if (mCardCount == 0) {
-            drawMaster.DrawEmptyAnchor(canvas, mX, mY, mDone);
+            renderer.DrawEmptyAnchor(mX, mY, mDone);
         } else {
-            drawMaster.DrawHiddenCard(canvas, mCard[mCardCount - 1]);
+            renderer.DrawHiddenCard(mX, mY);
         }
     }
 }
@@ -606,33 +663,19 @@ class DealFrom extends CardAnchor {
 class SeqSink extends CardAnchor {
 
     @Override
-    public void AddCard(final Card card) {
+    public void AddCard(final int card) {
         super.AddCard(card);
         mRules.EventAlert(Rules.EVENT_STACK_ADD, this);
     }
 
     @Override
-    public boolean CanDropCard(final MoveCard moveCard, final int close) {
-        Card card = moveCard.GetTopCard();
-        float x = card.GetX() + Card.WIDTH / 2;
-        float y = card.GetY() + Card.HEIGHT / 2;
-        Card topCard = mCardCount > 0 ? mCard[mCardCount - 1] : null;
-
-        if (IsOverCard(x, y, close)) {
-            if (moveCard.GetCount() == 1) {
-                if ((topCard == null && card.GetValue() == 1) || (topCard != null && card.GetSuit() == topCard.GetSuit() && card.GetValue() == topCard.GetValue() + 1)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+    public boolean canDrop(final int card, final int count) {
+        return count == 1 && DropSingleCard(card);
     }
 
     @Override
-    public boolean DropSingleCard(final Card card) {
-        Card topCard = mCardCount > 0 ? mCard[mCardCount - 1] : null;
-        if ((topCard == null && card.GetValue() == 1) || (topCard != null && card.GetSuit() == topCard.GetSuit() && card.GetValue() == topCard.GetValue() + 1)) {
+    public boolean DropSingleCard(final int card) {
+        if ((mCardCount == 0 && Card.GetValue(card) == 1) || (mCardCount > 0 && card == mCard[mCardCount - 1] + 1 && Card.GetValue(card) != 1)) {
             // AddCard(card);
             return true;
         }
@@ -644,19 +687,14 @@ class SeqSink extends CardAnchor {
 class SuitSeqStack extends SeqStack {
 
     @Override
-    public boolean CanDropCard(final MoveCard moveCard, final int close) {
-
-        Card card = moveCard.GetTopCard();
-        float x = card.GetX() + Card.WIDTH / 2;
-        float y = card.GetY() + Card.HEIGHT / 2;
-        Card topCard = mCardCount > 0 ? mCard[mCardCount - 1] : null;
-
-        if (IsOverCard(x, y, close)) {
-            if (topCard == null) {
-                if (card.GetValue() == Card.KING) {
-                    return true;
-                }
-            } else if ((card.GetSuit() & 1) != (topCard.GetSuit() & 1) && card.GetValue() == topCard.GetValue() - 1) {
+    public boolean canDrop(final int card, final int count) {
+        if (mCardCount == 0) {
+            if (Card.GetValue(card) == Card.KING) {
+                return true;
+            }
+        } else {
+            int topCard = mCard[mCardCount - 1];
+            if (Card.isRed(card) != Card.isRed(topCard) && Card.GetValue(card) == Card.GetValue(topCard) - 1) {
                 return true;
             }
         }
@@ -665,14 +703,8 @@ class SuitSeqStack extends SeqStack {
     }
 
     @Override
-    public Card[] GetCardStack() {
-        int visibleCount = GetVisibleCount();
-        Card[] ret = new Card[visibleCount];
-
-        for (int i = visibleCount - 1; i >= 0; i--) {
-            ret[i] = PopCard();
-        }
-        return ret;
+    public int getStackCount() {
+        return GetVisibleCount();
     }
 
     @Override
@@ -685,66 +717,44 @@ class SuitSeqStack extends SeqStack {
 class SpiderStack extends SeqStack {
 
     @Override
-    public void AddCard(final Card card) {
+    public void AddCard(final int card) {
         super.AddCard(card);
         mRules.EventAlert(Rules.EVENT_STACK_ADD, this);
     }
 
     @Override
-    public boolean CanDropCard(final MoveCard moveCard, final int close) {
-
-        Card card = moveCard.GetTopCard();
-        float x = card.GetX() + Card.WIDTH / 2;
-        float y = card.GetY() + Card.HEIGHT / 2;
-        Card topCard = mCardCount > 0 ? mCard[mCardCount - 1] : null;
-
-        if (IsOverCard(x, y, close)) {
-            if (topCard == null || card.GetValue() == topCard.GetValue() - 1) {
-                return true;
-            }
+    public boolean canDrop(final int card, final int count) {
+        if (mCardCount == 0 || Card.GetValue(card) == Card.GetValue(mCard[mCardCount - 1]) - 1) {
+            return true;
         }
 
         return false;
     }
 
+    // Same suit and one higher is just the next card up, as long as it
+    // isn't an ace sitting on a king of the suit before.
     @Override
-    public int GetMovableCount() {
-        if (mCardCount < 2) {
-            return mCardCount;
-        }
-
-        int retCount = 1;
-        int suit = mCard[mCardCount - 1].GetSuit();
-        int val = mCard[mCardCount - 1].GetValue();
-
-        for (int i = mCardCount - 2; i >= mHiddenCount; i--, retCount++, val++) {
-            if (mCard[i].GetSuit() != suit || mCard[i].GetValue() != val + 1) {
-                break;
-            }
-        }
-
-        return retCount;
+    protected boolean follows(final int lower, final int upper) {
+        return lower == upper + 1 && Card.GetValue(lower) != 1;
     }
 
     @Override
-    public Card[] GetCardStack() {
-        int retCount = GetMovableCount();
-
-        Card[] ret = new Card[retCount];
-
-        for (int i = retCount - 1; i >= 0; i--) {
-            ret[i] = PopCard();
-        }
+    public int GetMovableCount() {
+        // The top card can always go, face up or not.
+        return Math.min(getRun(), Math.max(GetVisibleCount(), 1));
+    }
 
-        return ret;
+    @Override
+    public int getStackCount() {
+        return GetMovableCount();
     }
 
     @Override
     public boolean ExpandStack(final float x, final float y) {
         if (super.ExpandStack(x, y)) {
-            Card bottom = mCard[mCardCount - 1];
-            Card second = mCard[mCardCount - 2];
-            if (bottom.GetSuit() == second.GetSuit() && bottom.GetValue() == second.GetValue() - 1) {
+            int bottom = mCard[mCardCount - 1];
+            int second = mCard[mCardCount - 2];
+            if (Card.GetSuit(bottom) == Card.GetSuit(second) && Card.GetValue(bottom) == Card.GetValue(second) - 1) {
                 return true;
             }
         }
@@ -754,7 +764,7 @@ class SpiderStack extends SeqStack {
     @Override
     public boolean CanMoveStack(final float x, final float y) {
         if (super.ExpandStack(x, y)) {
-            float maxY = mCard[mCardCount - GetMovableCount()].GetY();
+            float maxY = getCardY(mCardCount - GetMovableCount());
 
             if (y >= maxY - Card.HEIGHT / 2) {
                 return true;
@@ -769,19 +779,14 @@ class SpiderStack extends SeqStack {
 class FreecellStack extends SeqStack {
 
     @Override
-    public boolean CanDropCard(final MoveCard moveCard, final int close) {
-
-        Card card = moveCard.GetTopCard();
-        float x = card.GetX() + Card.WIDTH / 2;
-        float y = card.GetY() + Card.HEIGHT / 2;
-        Card topCard = mCardCount > 0 ? mCard[mCardCount - 1] : null;
-
-        if (IsOverCard(x, y, close)) {
-            if (topCard == null) {
-                if (mRules.CountFreeSpaces() >= moveCard.GetCount()) {
-                    return true;
-                }
-            } else if ((card.GetSuit() & 1) != (topCard.GetSuit() & 1) && card.GetValue() == topCard.GetValue() - 1) {
+    public boolean canDrop(final int card, final int count) {
+        if (mCardCount == 0) {
+            if (mRules.CountFreeSpaces() >= count) {
+                return true;
+            }
+        } else {
+            int topCard = mCard[mCardCount - 1];
+            if (Card.isRed(card) != Card.isRed(topCard) && Card.GetValue(card) == Card.GetValue(topCard) - 1) {
                 return true;
             }
         }
@@ -789,42 +794,31 @@ class FreecellStack extends SeqStack {
         return false;
     }
 
+    @Override
+    protected boolean follows(final int lower, final int upper) {
+        return Card.isRed(lower) != Card.isRed(upper) && Card.GetValue(lower) == Card.GetValue(upper) + 1;
+    }
+
     @Override
     public int GetMovableCount() {
         if (mCardCount < 2) {
             return mCardCount;
         }
-
-        int retCount = 1;
-        int maxMoveCount = mRules.CountFreeSpaces() + 1;
-
-        for (int i = mCardCount - 2; i >= 0 && retCount < maxMoveCount; i--, retCount++) {
-            if ((mCard[i].GetSuit() & 1) == (mCard[i + 1].GetSuit() & 1) || mCard[i].GetValue() != mCard[i + 1].GetValue() + 1) {
-                break;
-            }
-        }
-
-        return retCount;
+        return Math.min(getRun(), mRules.CountFreeSpaces() + 1);
     }
 
     @Override
-    public Card[] GetCardStack() {
-        int retCount = GetMovableCount();
-        Card[] ret = new Card[retCount];
-
-        for (int i = retCount - 1; i >= 0; i--) {
-            ret[i] = PopCard();
-        }
-        return ret;
+    public int getStackCount() {
+        return GetMovableCount();
     }
 
     @Override
     public boolean ExpandStack(final float x, final float y) {
         if (super.ExpandStack(x, y)) {
             if (mRules.CountFreeSpaces() > 0) {
-                Card bottom = mCard[mCardCount - 1];
-                Card second = mCard[mCardCount - 2];
-                if ((bottom.GetSuit() & 1) != (second.GetSuit() & 1) && bottom.GetValue() == second.GetValue() - 1) {
+                int bottom = mCard[mCardCount - 1];
+                int second = mCard[mCardCount - 2];
+                if (Card.isRed(bottom) != Card.isRed(second) && Card.GetValue(bottom) == Card.GetValue(second) - 1) {
                     return true;
                 }
             }
@@ -835,7 +829,7 @@ class FreecellStack extends SeqStack {
     @Override
     public boolean CanMoveStack(final float x, final float y) {
         if (super.ExpandStack(x, y)) {
-            float maxY = mCard[mCardCount - GetMovableCount()].GetY();
+            float maxY = getCardY(mCardCount - GetMovableCount());
             if (y >= maxY - Card.HEIGHT / 2) {
                 return true;
             }
@@ -848,417 +842,8 @@ class FreecellStack extends SeqStack {
 class FreecellHold extends CardAnchor {
 
     @Override
-    public boolean CanDropCard(final MoveCard moveCard, final int close) {
-        Card card = moveCard.GetTopCard();
-        if (mCardCount == 0 && moveCard.GetCount() == 1 && IsOverCard(card.GetX() + Card.WIDTH / 2, card.GetY() + Card.HEIGHT / 2, close)) {
-            return true;
-        }
-        return false;
-    }
-
-}
-
-// New Abstract
-class GenericAnchor extends CardAnchor {
-
-    // Sequence start values
-    public static final int START_ANY = 1; // An empty stack can take any card.
-    public static final int START_KING = 2; // An empty stack can take only a king.
-
-    // Value Sequences
-    public static final int SEQ_ANY = 1; // You can build as you like
-    public static final int SEQ_SEQ = 2; // Building only allows sequential
-    public static final int SEQ_ASC = 3; // Ascending only
-    public static final int SEQ_DSC = 4; // Descending only
-
-    // Suit Sequences that limits how adding cards to the stack works
-    public static final int SUIT_ANY = 1; // Build doesn't care about suite
-    public static final int SUIT_RB = 2; // Must alternate Red & Black
-    public static final int SUIT_OTHER = 3;// As long as different
-    public static final int SUIT_COLOR = 4;// As long as same color
-    public static final int SUIT_SAME = 5; // As long as same suit
-
-    // Pickup & Dropoff Behavior
-    public static final int PACK_NONE = 1; // Interaction in this mode not allowed
-    public static final int PACK_ONE = 2; // Can only accept 1 card
-    public static final int PACK_MULTI = 3; // Can accept multiple cards
-    public static final int PACK_FIXED = 4; // Don't think this will ever be used
-    public static final int PACK_LIMIT_BY_FREE = 5; // For freecell style movement
-
-    // Anchor Display (Hidden vs. Shown faces)
-    public static final int DISPLAY_ALL = 1; // All cards are shown
-    public static final int DISPLAY_HIDE = 2; // All cards are hidden
-    public static final int DISPLAY_MIX = 3; // Uses a mixture
-    public static final int DISPLAY_ONE = 4; // Displays one only
-
-    // Hack to fix Spider Dealing
-    public static final int DEALHACK = 1;
-
-    protected static final int SMALL_SPACING = 7;
-    protected static final int HIDDEN_SPACING = 3;
-
-    protected int mSpacing;
-    protected boolean mHideHidden;
-    protected int mMaxHeight;
-
-    public GenericAnchor() {
-        super();
-        SetStartSeq(GenericAnchor.SEQ_ANY);
-        SetBuildSeq(GenericAnchor.SEQ_ANY);
-        SetBuildWrap(false);
-        SetBuildSuit(GenericAnchor.SUIT_ANY);
-        SetDropoff(GenericAnchor.PACK_NONE);
-        SetPickup(GenericAnchor.PACK_NONE);
-        SetDisplay(GenericAnchor.DISPLAY_ALL);
-        mSpacing = GetMaxSpacing();
-        mHideHidden = false;
-        mMaxHeight = Card.HEIGHT;
+    public boolean canDrop(final int card, final int count) {
+        return mCardCount == 0 && count == 1;
     }
 
-    @Override
-    public void SetMaxHeight(final int maxHeight) {
-        mMaxHeight = maxHeight;
-        CheckSizing();
-        SetPosition(mX, mY);
-    }
-
-    @Override
-    protected void SetCardPosition(final int idx) {
-        if (idx < mHiddenCount) {
-            if (mHideHidden) {
-                mCard[idx].SetPosition(mX, mY);
-            } else {
-                mCard[idx].SetPosition(mX, mY + HIDDEN_SPACING * idx);
-            }
-        } else {
-            int startY = mHideHidden ? HIDDEN_SPACING : mHiddenCount * HIDDEN_SPACING;
-            int y = (int) mY + startY + (idx - mHiddenCount) * mSpacing;
-            mCard[idx].SetPosition(mX, y);
-        }
-    }
-
-    @Override
-    public void SetHiddenCount(final int count) {
-        super.SetHiddenCount(count);
-        CheckSizing();
-        SetPosition(mX, mY);
-    }
-
-    @Override
-    public void AddCard(final Card card) {
-        super.AddCard(card);
-        CheckSizing();
-        if (mHACK == GenericAnchor.DEALHACK) {
-            mRules.EventAlert(Rules.EVENT_STACK_ADD, this);
-        }
-    }
-
-    @Override
-    public Card PopCard() {
-        Card ret = super.PopCard();
-        CheckSizing();
-        return ret;
-    }
-
-    @Override
-    public boolean CanDropCard(final MoveCard moveCard, final int close) {
-        if (mDROPOFF == GenericAnchor.PACK_NONE) {
-            return false;
-        }
-
-        Card card = moveCard.GetTopCard();
-        float x = card.GetX() + Card.WIDTH / 2;
-        float y = card.GetY() + Card.HEIGHT / 2;
-        if (IsOverCard(x, y, close)) {
-            return CanBuildCard(card);
-        }
-        return false;
-    }
-
-    public boolean CanBuildCard(final Card card) {
-        // SEQ_ANY will allow all
-        if (mBUILDSEQ == GenericAnchor.SEQ_ANY) {
-            return true;
-        }
-        Card topCard = mCardCount > 0 ? mCard[mCardCount - 1] : null;
-        // Rules for empty stacks
-        if (topCard == null) {
-            switch (mSTARTSEQ) {
-                case GenericAnchor.START_KING:
-                    return card.GetValue() == Card.KING;
-                case GenericAnchor.START_ANY:
-                default:
-                    return true;
-            }
-        }
-        int value = card.GetValue();
-        int suit = card.GetSuit();
-        int tvalue = topCard.GetValue();
-        int tsuit = topCard.GetSuit();
-        // Fail if sequence is wrong
-        switch (mBUILDSEQ) {
-        // WRAP_NOWRAP=1; //Building stacks do not wrap
-        // WRAP_WRAP=2; //Building stacks wraps around
-            case GenericAnchor.SEQ_ASC:
-                if (value - tvalue != 1) {
-                    return false;
-                }
-                break;
-            case GenericAnchor.SEQ_DSC:
-                if (tvalue - value != 1) {
-                    return false;
-                }
-                break;
-            case GenericAnchor.SEQ_SEQ:
-                if (Math.abs(tvalue - value) != 1) {
-                    return false;
-                }
-                break;
-        }
-        // Fail if suit is wrong
-        switch (mBUILDSUIT) {
-            case GenericAnchor.SUIT_RB:
-                if (Math.abs(tsuit - suit) % 2 == 0) {
-                    return false;
-                }
-                break;
-            case GenericAnchor.SUIT_OTHER:
-                if (tsuit == suit) {
-                    return false;
-                }
-                break;
-            case GenericAnchor.SUIT_COLOR:
-                if (Math.abs(tsuit - suit) != 2) {
-                    return false;
-                }
-                break;
-            case GenericAnchor.SUIT_SAME:
-                if (tsuit != suit) {
-                    return false;
-                }
-                break;
-        }
-        // Passes all rules
-        return true;
-    }
-
-    @Override
-    public void Draw(final DrawMaster drawMaster, final Canvas canvas) {
-        if (mCardCount == 0) {
-            drawMaster.DrawEmptyAnchor(canvas, mX, mY, mDone);
-            return;
-        }
-        switch (mDISPLAY) {
-            case GenericAnchor.DISPLAY_ALL:
-                for (int i = 0; i < mCardCount; i++) {
-                    drawMaster.DrawCard(canvas, mCard[i]);
-                }
-                break;
-            case GenericAnchor.DISPLAY_HIDE:
-                for (int i = 0; i < mCardCount; i++) {
-                    drawMaster.DrawHiddenCard(canvas, mCard[i]);
-                }
-                break;
-            case GenericAnchor.DISPLAY_MIX:
-                for (int i = 0; i < mCardCount; i++) {
-                    if (i < mHiddenCount) {
-                        drawMaster.DrawHiddenCard(canvas, mCard[i]);
-                    } else {
-                        drawMaster.DrawCard(canvas, mCard[i]);
-                    }
-                }
-                break;
-            case GenericAnchor.DISPLAY_ONE:
-                for (int i = 0; i < mCardCount; i++) {
-                    if (i < mCardCount - 1) {
-                        drawMaster.DrawHiddenCard(canvas, mCard[i]);
-                    } else {
-                        drawMaster.DrawCard(canvas, mCard[i]);
-                    }
-                }
-                break;
-        }
-    }
-
-    @Override
-    public boolean ExpandStack(final float x, final float y) {
-        if (IsOverDeck(x, y)) {
-            return (GetMovableCount() > 0);
-            /*
-             * if (mHiddenCount >= mCardCount) { mHiddenCount = mCardCount == 0 ? 0 : mCardCount - 1; } else if (mCardCount - mHiddenCount > 1) { return true; }
-             */
-        }
-        return false;
-    }
-
-    @Override
-    public boolean CanMoveStack(final float x, final float y) {
-        return ExpandStack(x, y);
-    }
-
-    @Override
-    public Card[] GetCardStack() {
-        int movableCount = GetMovableCount();
-        Card[] ret = new Card[movableCount];
-        for (int i = movableCount - 1; i >= 0; i--) {
-            ret[i] = PopCard();
-        }
-        return ret;
-    }
-
-    @Override
-    public int GetMovableCount() {
-        int visibleCount = GetVisibleCount();
-        if (visibleCount == 0 || mPICKUP == GenericAnchor.PACK_NONE) {
-            return 0;
-        }
-        int seq_allowed = 1;
-        if (visibleCount > 1) {
-            int i = mCardCount - 1;
-            boolean g;
-            boolean h;
-            do {
-                g = true;
-                h = true;
-                switch (mMOVESEQ) {
-                    case GenericAnchor.SEQ_ANY:
-                        h = true;
-                        break;
-                    case GenericAnchor.SEQ_ASC:
-                        h = this.is_seq_asc(i - 1, i, mMOVEWRAP);
-                        break;
-                    case GenericAnchor.SEQ_DSC:
-                        h = this.is_seq_asc(i, i - 1, mMOVEWRAP);
-                        break;
-                    case GenericAnchor.SEQ_SEQ:
-                        h = (this.is_seq_asc(i, i - 1, mMOVEWRAP) || this.is_seq_asc(i - 1, i, mMOVEWRAP));
-                        break;
-                }
-                if (h == false) {
-                    g = false;
-                }
-                switch (mMOVESUIT) {
-                    case GenericAnchor.SUIT_ANY:
-                        h = true;
-                        break;
-                    case GenericAnchor.SUIT_COLOR:
-                        h = !this.is_suit_rb(i - 1, i);
-                        break;
-                    case GenericAnchor.SUIT_OTHER:
-                        h = this.is_suit_other(i - 1, i);
-                        break;
-                    case GenericAnchor.SUIT_RB:
-                        h = this.is_suit_rb(i - 1, i);
-                        break;
-                    case GenericAnchor.SUIT_SAME:
-                        h = this.is_suit_same(i - 1, i);
-                        break;
-                }
-                if (h == false) {
-                    g = false;
-                }
-                if (g) {
-                    seq_allowed++;
-                }
-                i--;
-            } while (g && (mCardCount - i) < visibleCount);
-        }
-
-        switch (mPICKUP) {
-            case GenericAnchor.PACK_NONE:
-                return 0;
-            case GenericAnchor.PACK_ONE:
-                seq_allowed = Math.min(1, seq_allowed);
-                break;
-            case GenericAnchor.PACK_MULTI:
-                break;
-            case GenericAnchor.PACK_FIXED:
-                // seq_allowed = Math.min( xmin, seq_allowed);
-                break;
-            case GenericAnchor.PACK_LIMIT_BY_FREE:
-                seq_allowed = Math.min(mRules.CountFreeSpaces() + 1, seq_allowed);
-                break;
-        }
-        return seq_allowed;
-    }
-
-    public boolean is_seq_asc(final int p1, final int p2, final boolean wrap) {
-        Card c1 = mCard[p1];
-        Card c2 = mCard[p2];
-        int v1 = c1.GetValue();
-        int v2 = c2.GetValue();
-
-        if (v2 + 1 == v1) {
-            return true;
-        }
-        if (wrap) {
-            if (v2 == Card.KING && v1 == Card.ACE) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    public boolean is_suit_rb(final int p1, final int p2) {
-        Card c1 = mCard[p1];
-        Card c2 = mCard[p2];
-        int s1 = c1.GetSuit();
-        int s2 = c2.GetSuit();
-        if ((s1 == Card.CLUBS || s1 == Card.SPADES) && (s2 == Card.HEARTS || s2 == Card.DIAMONDS)) {
-            return true;
-        }
-        if ((s1 == Card.HEARTS || s1 == Card.DIAMONDS) && (s2 == Card.CLUBS || s2 == Card.SPADES)) {
-            return true;
-        }
-        return false;
-    }
-
-    public boolean is_suit_same(final int p1, final int p2) {
-        return (mCard[p1].GetSuit() == mCard[p2].GetSuit());
-    }
-
-    public boolean is_suit_other(final int p1, final int p2) {
-        return (mCard[p1].GetSuit() != mCard[p2].GetSuit());
-    }
-
-    private void CheckSizing() {
-        if (mCardCount < 2 || mCardCount - mHiddenCount < 2) {
-            mSpacing = GetMaxSpacing();
-            mHideHidden = false;
-            return;
-        }
-        int max = mMaxHeight;
-        int hidden = mHiddenCount;
-        int showing = mCardCount - hidden;
-        int spaceLeft = max - (hidden * HIDDEN_SPACING) - Card.HEIGHT;
-        int spacing = spaceLeft / (showing - 1);
-
-        if (spacing < SMALL_SPACING && hidden > 1) {
-            mHideHidden = true;
-            spaceLeft = max - HIDDEN_SPACING - Card.HEIGHT;
-            spacing = spaceLeft / (showing - 1);
-        } else {
-            mHideHidden = false;
-            if (spacing > GetMaxSpacing()) {
-                spacing = GetMaxSpacing();
-            }
-        }
-        if (spacing != mSpacing) {
-            mSpacing = spacing;
-            SetPosition(mX, mY);
-        }
-    }
-
-    // This can't be a constant as Card.HEIGHT isn't constant.
-    protected int GetMaxSpacing() {
-        return Card.HEIGHT / 3;
-    }
-
-    @Override
-    public float GetNewY() {
-        if (mCardCount == 0) {
-            return mY;
-        }
-        return mCard[mCardCount - 1].GetY() + mSpacing;
-    }
 }
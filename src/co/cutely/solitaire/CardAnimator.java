@@ -0,0 +1,25 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+// Moves a card that's been taken off from onto to. The card must end up added
+// to to once the animation is done. from is only used to work out where the
+// card starts.
+public interface CardAnimator {
+    public void MoveCard(int card, CardAnchor from, CardAnchor to);
+
+    // Moves count cards at once, card[i] from (cardX[i], cardY[i]) onto
+    // to[i]. They're added in order, so several can go to the same anchor.
+    public void MoveCards(int[] card, float[] cardX, float[] cardY, CardAnchor[] to, int count);
+}
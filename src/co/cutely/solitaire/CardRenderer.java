@@ -0,0 +1,24 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+// What the anchors draw themselves with, so they don't need to know about
+// the canvas (or that there is one at all).
+public interface CardRenderer {
+    public void DrawCard(int card, float x, float y);
+
+    public void DrawHiddenCard(float x, float y);
+
+    public void DrawEmptyAnchor(float x, float y, boolean done);
+}
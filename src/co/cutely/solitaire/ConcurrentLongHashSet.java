@@ -0,0 +1,96 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// LongHashSet for several threads at once. Slots are claimed with a compare
+// and set, so adding never takes a lock, but that also means the table can't
+// be grown while it's in use: it's sized up front and isFull() says when it
+// has got too crowded to keep using.
+class ConcurrentLongHashSet {
+
+    private final AtomicLongArray mTable;
+    private final int mMask;
+    private final int mLimit;
+    private final AtomicInteger mSize;
+    private final AtomicBoolean mHasZero;
+
+    public ConcurrentLongHashSet(final int capacity) {
+        int size = 16;
+        while (size < capacity * 2) {
+            size <<= 1;
+        }
+        mTable = new AtomicLongArray(size);
+        mMask = size - 1;
+        mLimit = size / 4 * 3;
+        mSize = new AtomicInteger();
+        mHasZero = new AtomicBoolean();
+    }
+
+    // Returns false if key was already in the set.
+    public boolean add(final long key) {
+        // 0 marks an empty slot, so it's kept on the side.
+        if (key == 0) {
+            return mHasZero.compareAndSet(false, true);
+        }
+        int idx = (int) key & mMask;
+        for (int probe = 0; probe <= mMask; probe++) {
+            long current = mTable.get(idx);
+            if (current == 0) {
+                if (mTable.compareAndSet(idx, 0, key)) {
+                    mSize.incrementAndGet();
+                    return true;
+                }
+                // Someone else got the slot first, look at what they put there.
+                current = mTable.get(idx);
+            }
+            if (current == key) {
+                return false;
+            }
+            idx = (idx + 1) & mMask;
+        }
+        // Completely full, nothing more can be remembered.
+        return true;
+    }
+
+    public boolean contains(final long key) {
+        if (key == 0) {
+            return mHasZero.get();
+        }
+        int idx = (int) key & mMask;
+        for (int probe = 0; probe <= mMask; probe++) {
+            long current = mTable.get(idx);
+            if (current == 0) {
+                return false;
+            }
+            if (current == key) {
+                return true;
+            }
+            idx = (idx + 1) & mMask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return mSize.get() + (mHasZero.get() ? 1 : 0);
+    }
+
+    // Past three quarters full the probes get long, time to stop.
+    public boolean isFull() {
+        return mSize.get() > mLimit;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+// Deals that are known to be winnable, made ahead of time on a background
+// thread so starting a game never has to wait on a solver. Deals are kept by
+// variant and by the options that change the deal or whether it can be won
+// (see key()), a few of each. Only the kinds of deal that have been asked for
+// get made, and the thread stops once they're all topped up. Nothing is asked
+// for unless the player wants winnable deals (see isWanted).
+class DealPool {
+
+    // Deals kept of each kind
+    public static final int CAPACITY = 4;
+
+    // What each deal gets from the solver. A deal it gives up on is thrown
+    // away, the same as one it proves can't be won.
+    private static final long SOLVE_NODES = 100000;
+    private static final long SOLVE_MILLIS = 2000;
+    // Stop on a kind of deal after this many misses in a row (four suit
+    // Spider rarely solves). The misses are saved with the deals, so a kind
+    // that's been stopped stays stopped.
+    private static final int MAX_MISSES = 20;
+
+    private static final String VERSION = "deal_pool_3";
+
+    private static class Kind {
+        int mType;
+        DefaultOptions mOptions;
+    }
+
+    private HashMap<String, LinkedList<GameState>> mDeals;
+    private HashMap<String, Kind> mWanted;
+    // Misses in a row by key, a kind with none isn't in here
+    private HashMap<String, Integer> mMisses;
+    private Thread mThread;
+    private volatile Solver mSolver;
+    private volatile boolean mStopped;
+
+    public DealPool() {
+        mDeals = new HashMap<String, LinkedList<GameState>>();
+        mWanted = new HashMap<String, Kind>();
+        mMisses = new HashMap<String, Integer>();
+    }
+
+    // Whether new games of the type should come from the pool: for every
+    // variant with WinnableDeals, and for Forty Thieves with its own
+    // FortyThievesWinnable.
+    public static boolean isWanted(final int type, final GameOptions options) {
+        return options.getBoolean("WinnableDeals", false)
+                || (type == Rules.FORTYTHIEVES && options.getBoolean("FortyThievesWinnable", false));
+    }
+
+    // Which deals are interchangeable: the same variant, and for Klondike the
+    // same deal count and scoring, for Spider the same number of suits, for
+    // Freecell the same numbering.
+    public static String key(final int type, final GameOptions options) {
+        switch (type) {
+            case Rules.SOLITAIRE:
+                return type + (options.getBoolean("SolitaireDealThree", false) ? ":3" : ":1")
+                        + (options.getBoolean("SolitaireStyleNormal", true) ? ":normal" : ":vegas");
+            case Rules.SPIDER:
+                return type + ":" + options.getInt("SpiderSuits", 4);
+            case Rules.FREECELL:
+                return type + (options.getBoolean("FreecellMSDeals", false) ? ":ms" : "");
+        }
+        return String.valueOf(type);
+    }
+
+    // A winnable deal for the game, or null if there isn't one ready. Never
+    // waits, and starts topping the pool up again in the background.
+    public synchronized GameState poll(final int type, final GameOptions options) {
+        String key = key(type, options);
+        Kind kind = mWanted.get(key);
+        if (kind == null) {
+            kind = new Kind();
+            kind.mType = type;
+            kind.mOptions = new DefaultOptions().putBoolean("SolitaireDealThree", options.getBoolean("SolitaireDealThree", false))
+                    .putBoolean("SolitaireStyleNormal", options.getBoolean("SolitaireStyleNormal", true))
+                    .putInt("SpiderSuits", options.getInt("SpiderSuits", 4))
+                    .putBoolean("FreecellMSDeals", options.getBoolean("FreecellMSDeals", false));
+            mWanted.put(key, kind);
+        }
+        mStopped = false;
+
+        GameState deal = null;
+        LinkedList<GameState> deals = mDeals.get(key);
+        if (deals != null) {
+            deal = deals.poll();
+        }
+        start();
+        return deal;
+    }
+
+    public synchronized int size(final int type, final GameOptions options) {
+        LinkedList<GameState> deals = mDeals.get(key(type, options));
+        return deals == null ? 0 : deals.size();
+    }
+
+    // Stops making deals until the next poll(), for when the game isn't on
+    // screen. Anything already made is kept.
+    public void pause() {
+        mStopped = true;
+        Solver solver = mSolver;
+        if (solver != null) {
+            solver.cancel();
+        }
+    }
+
+    public synchronized void write(final ObjectOutput out) throws IOException {
+        out.writeObject(VERSION);
+        out.writeInt(mDeals.size());
+        for (Iterator<Map.Entry<String, LinkedList<GameState>>> it = mDeals.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, LinkedList<GameState>> entry = it.next();
+            out.writeUTF(entry.getKey());
+            LinkedList<GameState> deals = entry.getValue();
+            out.writeInt(deals.size());
+            for (Iterator<GameState> deal = deals.iterator(); deal.hasNext();) {
+                deal.next().write(out);
+            }
+        }
+        out.writeInt(mMisses.size());
+        for (Iterator<Map.Entry<String, Integer>> it = mMisses.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Integer> entry = it.next();
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().intValue());
+        }
+    }
+
+    // Adds the deals and the misses written by write(). Returns false, having
+    // added nothing, if they were written by some other version.
+    public synchronized boolean read(final ObjectInput in) throws IOException, ClassNotFoundException {
+        if (!VERSION.equals(in.readObject())) {
+            return false;
+        }
+        HashMap<String, LinkedList<GameState>> read = new HashMap<String, LinkedList<GameState>>();
+        int keyCount = in.readInt();
+        for (int i = 0; i < keyCount; i++) {
+            String key = in.readUTF();
+            int count = in.readInt();
+            LinkedList<GameState> deals = new LinkedList<GameState>();
+            for (int j = 0; j < count; j++) {
+                deals.add(GameState.read(in));
+            }
+            read.put(key, deals);
+        }
+        HashMap<String, Integer> misses = new HashMap<String, Integer>();
+        int missCount = in.readInt();
+        for (int i = 0; i < missCount; i++) {
+            String key = in.readUTF();
+            misses.put(key, Integer.valueOf(in.readInt()));
+        }
+        mMisses.putAll(misses);
+        for (Iterator<Map.Entry<String, LinkedList<GameState>>> it = read.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, LinkedList<GameState>> entry = it.next();
+            LinkedList<GameState> deals = entry.getValue();
+            while (!deals.isEmpty()) {
+                add(entry.getKey(), deals.poll());
+            }
+        }
+        return true;
+    }
+
+    private synchronized void start() {
+        if (mThread != null || mStopped) {
+            return;
+        }
+        mThread = new Thread(new Runnable() {
+            public void run() {
+                produce();
+            }
+        });
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    private void produce() {
+        while (true) {
+            String key;
+            Kind kind;
+            // Deciding to stop and saying so happen together, so a poll()
+            // can't miss that there's no thread any more.
+            synchronized (this) {
+                key = mStopped ? null : nextWanted();
+                if (key == null) {
+                    mThread = null;
+                    return;
+                }
+                kind = mWanted.get(key);
+            }
+
+            Rules rules = Rules.CreateRules(kind.mType, null, kind.mOptions, null, new MoveLog(), null);
+            GameState deal = GameState.capture(rules);
+            Solver solver = Solver.create(deal, kind.mOptions);
+            mSolver = solver;
+            if (mStopped) {
+                continue;
+            }
+            boolean won = solver.solve(SOLVE_NODES, SOLVE_MILLIS) == Solver.SOLVED;
+            mSolver = null;
+            // Cancelled by pause(), which says nothing about the deal. Not
+            // mStopped, a poll() since may have cleared it.
+            if (solver.isCancelled()) {
+                continue;
+            }
+
+            synchronized (this) {
+                if (won) {
+                    add(key, deal);
+                    mMisses.remove(key);
+                } else {
+                    mMisses.put(key, Integer.valueOf(getMisses(key) + 1));
+                }
+            }
+        }
+    }
+
+    // A kind of deal that's short and still worth trying for, or null.
+    private String nextWanted() {
+        for (Iterator<Map.Entry<String, Kind>> it = mWanted.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Kind> entry = it.next();
+            LinkedList<GameState> deals = mDeals.get(entry.getKey());
+            if ((deals == null || deals.size() < CAPACITY) && getMisses(entry.getKey()) < MAX_MISSES) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private int getMisses(final String key) {
+        Integer misses = mMisses.get(key);
+        return misses == null ? 0 : misses.intValue();
+    }
+
+    private void add(final String key, final GameState deal) {
+        LinkedList<GameState> deals = mDeals.get(key);
+        if (deals == null) {
+            deals = new LinkedList<GameState>();
+            mDeals.put(key, deals);
+        }
+        if (deals.size() < CAPACITY) {
+            deals.add(deal);
+        }
+    }
+}
@@ -15,69 +15,95 @@
  */
 package co.cutely.solitaire;
 
-import java.util.Random;
+import java.math.BigInteger;
 
+// A shuffled pack of one or more decks. The order comes entirely from the
+// seed, so the same seed always deals the same game.
 public class Deck {
 
-    private Card[] mCard;
+    private byte[] mCard;
     private int mCardCount;
+    private long mState;
 
-    public Deck(final int decks) {
-        Init(decks, 4);
+    public Deck(final int decks, final long seed) {
+        Init(decks, 4, seed);
     }
 
-    public Deck(int decks, final int suits) {
+    public Deck(int decks, final int suits, final long seed) {
         if (suits == 2) {
             decks *= 2;
         } else if (suits == 1) {
             decks *= 4;
         }
-        Init(decks, suits);
+        Init(decks, suits, seed);
     }
 
-    private void Init(final int decks, final int suits) {
+    private void Init(final int decks, final int suits, final long seed) {
         mCardCount = decks * 13 * suits;
-        mCard = new Card[mCardCount];
+        mCard = new byte[mCardCount];
         for (int deck = 0; deck < decks; deck++) {
             for (int suit = Card.CLUBS; suit < suits; suit++) {
                 for (int value = 0; value < 13; value++) {
-                    mCard[deck * suits * 13 + suit * Card.KING + value] = new Card(value + 1, suit);
+                    mCard[deck * suits * 13 + suit * Card.KING + value] = (byte) Card.make(value + 1, suit);
                 }
             }
         }
 
-        Shuffle();
-        Shuffle();
+        mState = seed;
         Shuffle();
     }
 
-    public void PushCard(final Card card) {
-        mCard[mCardCount++] = card;
+    public void PushCard(final int card) {
+        mCard[mCardCount++] = (byte) card;
     }
 
-    public Card PopCard() {
+    public int PopCard() {
         if (mCardCount > 0) {
             return mCard[--mCardCount];
         }
-        return null;
+        return Card.NONE;
     }
 
     public boolean Empty() {
         return mCardCount == 0;
     }
 
-    public void Shuffle() {
-        int lastIdx = mCardCount - 1;
-        int swapIdx;
-        Card swapCard;
-        Random rand = new Random();
-
-        while (lastIdx > 1) {
-            swapIdx = rand.nextInt(lastIdx);
-            swapCard = mCard[swapIdx];
+    // Fisher-Yates, every card can end up anywhere including where it
+    // started, so every order is equally likely.
+    private void Shuffle() {
+        for (int lastIdx = mCardCount - 1; lastIdx > 0; lastIdx--) {
+            int swapIdx = nextInt(lastIdx + 1);
+            byte swapCard = mCard[swapIdx];
             mCard[swapIdx] = mCard[lastIdx];
             mCard[lastIdx] = swapCard;
-            lastIdx--;
         }
     }
+
+    // SplitMix64 rather than java.util.Random, which only uses 48 bits of
+    // its seed. The same sequence on every device.
+    private long nextLong() {
+        long z = mState;
+        mState += 0x9e3779b97f4a7c15L;
+        return Zobrist.mix(z);
+    }
+
+    // Uniform in [0, bound), throwing away the draws that would favour the
+    // low numbers.
+    private int nextInt(final int bound) {
+        long limit = Long.MAX_VALUE - Long.MAX_VALUE % bound;
+        long r;
+        do {
+            r = nextLong() >>> 1;
+        } while (r >= limit);
+        return (int) (r % bound);
+    }
+
+    // How a seed is shown to people, and read back.
+    public static String seedToString(final long seed) {
+        return String.format("%016x", seed);
+    }
+
+    public static long parseSeed(final String seed) {
+        return new BigInteger(seed, 16).longValue();
+    }
 }
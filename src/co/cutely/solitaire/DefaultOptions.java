@@ -0,0 +1,46 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.HashMap;
+
+// GameOptions kept in a map, for the solvers, tools and anything else
+// running without the shared preferences. Unset keys get the default.
+class DefaultOptions implements GameOptions {
+    private HashMap<String, Object> mValues;
+
+    public DefaultOptions() {
+        mValues = new HashMap<String, Object>();
+    }
+
+    public DefaultOptions putBoolean(final String key, final boolean value) {
+        mValues.put(key, Boolean.valueOf(value));
+        return this;
+    }
+
+    public DefaultOptions putInt(final String key, final int value) {
+        mValues.put(key, Integer.valueOf(value));
+        return this;
+    }
+
+    public boolean getBoolean(final String key, final boolean defValue) {
+        Object value = mValues.get(key);
+        return value instanceof Boolean ? ((Boolean) value).booleanValue() : defValue;
+    }
+
+    public int getInt(final String key, final int defValue) {
+        Object value = mValues.get(key);
+        return value instanceof Integer ? ((Integer) value).intValue() : defValue;
+    }
+}
@@ -25,7 +25,7 @@ import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 
-public class DrawMaster {
+public class DrawMaster implements CardRenderer {
 
     private Context mContext;
 
@@ -46,6 +46,7 @@ public class DrawMaster {
     private Paint mDoneEmptyAnchorPaint;
     private Paint mShadePaint;
     private Paint mLightShadePaint;
+    private Paint mProgressPaint;
 
     private Paint mTimePaint;
     private int mLastSeconds;
@@ -72,6 +73,9 @@ public class DrawMaster {
         mLightShadePaint = new Paint();
         mLightShadePaint.setARGB(100, 0, 0, 0);
 
+        mProgressPaint = new Paint();
+        mProgressPaint.setARGB(200, 255, 255, 255);
+
         // Card related stuff
         mEmptyAnchorPaint = new Paint();
         mEmptyAnchorPaint.setARGB(255, 0, 64, 0);
@@ -104,19 +108,27 @@ public class DrawMaster {
         return mBoardCanvas;
     }
 
-    public void DrawCard(final Canvas canvas, final Card card) {
-        float x = card.GetX();
-        float y = card.GetY();
-        int idx = card.GetSuit() * 13 + (card.GetValue() - 1);
-        canvas.drawBitmap(mCardBitmap[idx], x, y, mSuitPaint);
+    public void DrawCard(final Canvas canvas, final int card, final float x, final float y) {
+        canvas.drawBitmap(mCardBitmap[card], x, y, mSuitPaint);
     }
 
-    public void DrawHiddenCard(final Canvas canvas, final Card card) {
-        float x = card.GetX();
-        float y = card.GetY();
+    public void DrawHiddenCard(final Canvas canvas, final float x, final float y) {
         canvas.drawBitmap(mCardHidden, x, y, mSuitPaint);
     }
 
+    // CardRenderer, these all draw onto the board canvas.
+    public void DrawCard(final int card, final float x, final float y) {
+        DrawCard(mBoardCanvas, card, x, y);
+    }
+
+    public void DrawHiddenCard(final float x, final float y) {
+        DrawHiddenCard(mBoardCanvas, x, y);
+    }
+
+    public void DrawEmptyAnchor(final float x, final float y, final boolean done) {
+        DrawEmptyAnchor(mBoardCanvas, x, y, done);
+    }
+
     public void DrawEmptyAnchor(final Canvas canvas, final float x, final float y, final boolean done) {
         RectF pos = new RectF(x, y, x + Card.WIDTH, y + Card.HEIGHT);
         if (!done) {
@@ -138,6 +150,13 @@ public class DrawMaster {
         canvas.drawRect(0, 0, mBoardWidth, mBoardHeight, mLightShadePaint);
     }
 
+    // How far through a replay, as a bar along the bottom.
+    public void DrawProgress(final Canvas canvas, final int position, final int length) {
+        if (length > 0) {
+            canvas.drawRect(0, mBoardHeight - 4, mBoardWidth * position / length, mBoardHeight, mProgressPaint);
+        }
+    }
+
     public void DrawLastBoard(final Canvas canvas) {
         canvas.drawBitmap(mBoardBitmap, 0, 0, mSuitPaint);
     }
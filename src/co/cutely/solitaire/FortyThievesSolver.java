@@ -0,0 +1,286 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.List;
+
+// Best first solver for Forty Thieves. Columns build down in suit and only
+// take as many cards at once as the empty columns allow (FortyThieves sets
+// them up with PACK_LIMIT_BY_FREE), and the stock is only gone through once,
+// a card at a time, so a card dealt on to the waste is stuck under whatever
+// comes after it until that's played. The score leans on that.
+class FortyThievesSolver extends Solver {
+
+    // Anchor layout from FortyThieves.Init
+    private static final int STACK = 0;
+    private static final int FOUNDATION = 10;
+    private static final int STOCK = 18;
+    private static final int WASTE = 19;
+
+    // Defaults for isWinnable, a few of these fit in the time a new game
+    // is allowed to take.
+    public static final long DEFAULT_NODES = 20000;
+    public static final long DEFAULT_MILLIS = 150;
+
+    // The two foundations of each suit, by top value. A suit with only one
+    // started has it in mHigh.
+    private int[] mLow;
+    private int[] mHigh;
+
+    public FortyThievesSolver(final GameState state, final GameOptions options) {
+        super(state, options);
+        mLow = new int[4];
+        mHigh = new int[4];
+    }
+
+    // Whether the deal in state could be solved inside the budget. Giving up
+    // counts as not winnable, the caller only wants deals it can promise.
+    public static boolean isWinnable(final GameState state, final GameOptions options, final long maxNodes, final long maxMillis) {
+        return new FortyThievesSolver(state, options).solve(maxNodes, maxMillis) == SOLVED;
+    }
+
+    @Override
+    protected boolean search() {
+        return bestFirst();
+    }
+
+    // Plays up any card nothing could want to build on any more, which is
+    // when both of the next lower cards of its suit are already up. Aces
+    // and twos always are, an ace never needs to sit on a two with eight
+    // foundations to go to.
+    @Override
+    protected void playForcedMoves() {
+        boolean played = true;
+        while (played) {
+            played = false;
+            readPiles();
+            for (int i = STACK; i <= WASTE && !played; i++) {
+                if (i == FOUNDATION) {
+                    i = WASTE;
+                }
+                int card = mAnchor[i].getTopCard();
+                if (card == Card.NONE) {
+                    continue;
+                }
+                int value = Card.GetValue(card);
+                if (value <= 2 || mLow[Card.GetSuit(card)] >= value - 1) {
+                    int sink = findPile(card);
+                    if (sink != -1) {
+                        mRules.applyMove(new Move(i, sink, 1, false, false));
+                        played = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // Every card not up counts, more for one that isn't on the next card up
+    // of its suit, and then every card on top of one that could go up next.
+    // The waste is scored like a column since it can only be dug into from
+    // the top. Empty columns count for it, they're what lets runs move.
+    @Override
+    protected int score() {
+        readPiles();
+        int home = 0;
+        for (int i = 0; i < 4; i++) {
+            home += mLow[i] + mHigh[i];
+        }
+        if (home == 104) {
+            return 0;
+        }
+        int score = (104 - home) * 4;
+        for (int i = STACK; i <= WASTE; i++) {
+            if (i == FOUNDATION) {
+                i = WASTE;
+            }
+            CardAnchor anchor = mAnchor[i];
+            int count = anchor.GetCount();
+            if (count == 0) {
+                score -= 8;
+                continue;
+            }
+            for (int j = 0; j < count; j++) {
+                int card = anchor.getCard(j);
+                int value = Card.GetValue(card);
+                int suit = Card.GetSuit(card);
+                if (j > 0 && anchor.getCard(j - 1) != card + 1) {
+                    score += 3;
+                }
+                if (value == mLow[suit] + 1 || value == mHigh[suit] + 1) {
+                    score += count - 1 - j;
+                }
+            }
+        }
+        return score < 1 ? 1 : score;
+    }
+
+    // Columns can be swapped around, and the two foundations of a suit only
+    // matter by what's on them, so neither is hashed by position. The waste
+    // is, card by card: two decks can put the same cards there in different
+    // orders with everything else the same.
+    @Override
+    protected long positionHash() {
+        long hash = Zobrist.hidden(STOCK, mAnchor[STOCK].GetCount());
+        CardAnchor waste = mAnchor[WASTE];
+        long pile = 0;
+        for (int j = 0; j < waste.GetCount(); j++) {
+            pile ^= Zobrist.card(WASTE, j, waste.getCard(j));
+        }
+        hash += Zobrist.mix(pile);
+        for (int i = FOUNDATION; i < FOUNDATION + 8; i++) {
+            int card = mAnchor[i].getTopCard();
+            if (card != Card.NONE) {
+                hash += Zobrist.card(FOUNDATION, 0, card);
+            }
+        }
+        for (int i = STACK; i < STACK + 10; i++) {
+            CardAnchor anchor = mAnchor[i];
+            long column = 0;
+            for (int j = 0; j < anchor.GetCount(); j++) {
+                column ^= Zobrist.card(STACK, j, anchor.getCard(j));
+            }
+            hash += Zobrist.mix(column);
+        }
+        return hash;
+    }
+
+    @Override
+    protected void generateMoves(final List<Move> moves) {
+        readPiles();
+        int firstEmpty = -1;
+        for (int i = STACK; i < STACK + 10 && firstEmpty == -1; i++) {
+            if (mAnchor[i].GetCount() == 0) {
+                firstEmpty = i;
+            }
+        }
+
+        // Up to the foundations.
+        for (int i = STACK; i <= WASTE; i++) {
+            if (i == FOUNDATION) {
+                i = WASTE;
+            }
+            int card = mAnchor[i].getTopCard();
+            if (card != Card.NONE) {
+                int sink = findPile(card);
+                if (sink != -1) {
+                    moves.add(new Move(i, sink, 1, false, false));
+                }
+            }
+        }
+
+        // Waste down on to a column.
+        int waste = mAnchor[WASTE].getTopCard();
+        if (waste != Card.NONE) {
+            for (int to = STACK; to < STACK + 10; to++) {
+                int top = mAnchor[to].getTopCard();
+                if (top == Card.NONE ? to == firstEmpty : top == waste + 1 && Card.GetValue(top) != 1) {
+                    moves.add(new Move(WASTE, to, 1, false, false));
+                }
+            }
+        }
+
+        // Column to column, as many cards as it takes to land on the other
+        // column, or as many as can move to an empty one. Moving cards off
+        // one copy of a card on to the other rarely gets anywhere, so that's
+        // skipped, as are fewer cards to an empty one (see pruned).
+        for (int from = STACK; from < STACK + 10; from++) {
+            CardAnchor anchor = mAnchor[from];
+            int count = anchor.GetCount();
+            if (count == 0) {
+                continue;
+            }
+            int movable = anchor.GetMovableCount();
+            int value = Card.GetValue(anchor.getCard(count - 1));
+            for (int to = STACK; to < STACK + 10; to++) {
+                if (to == from) {
+                    continue;
+                }
+                int top = mAnchor[to].getTopCard();
+                int n;
+                if (top == Card.NONE) {
+                    if (to != firstEmpty) {
+                        continue;
+                    }
+                    // Moving a whole column into an empty one gets nowhere
+                    // either. Part of a run, or fewer cards, are left out.
+                    n = movable < count ? movable : count - 1;
+                    if (n == 0) {
+                        continue;
+                    }
+                    boolean split = anchor.getCard(count - n - 1) == anchor.getCard(count - n) + 1;
+                    if (n > 1 || split) {
+                        pruned();
+                    }
+                    if (split) {
+                        continue;
+                    }
+                } else {
+                    n = Card.GetValue(top) - value;
+                    if (n < 1 || n > movable || anchor.getCard(count - n) != top - 1) {
+                        continue;
+                    }
+                    if (n < count && anchor.getCard(count - n - 1) == top) {
+                        pruned();
+                        continue;
+                    }
+                }
+                moves.add(new Move(from, to, n, false, false));
+            }
+        }
+
+        // Turn the next card over, the same move FortyThieves.EventProcess
+        // records.
+        if (mAnchor[STOCK].GetCount() > 0) {
+            moves.add(new Move(STOCK, WASTE, 1, true, false));
+        }
+    }
+
+    // Fills in mLow and mHigh from the foundations.
+    private void readPiles() {
+        for (int i = 0; i < 4; i++) {
+            mLow[i] = 0;
+            mHigh[i] = 0;
+        }
+        for (int i = FOUNDATION; i < FOUNDATION + 8; i++) {
+            int top = mAnchor[i].getTopCard();
+            if (top == Card.NONE) {
+                continue;
+            }
+            int suit = Card.GetSuit(top);
+            int value = Card.GetValue(top);
+            if (value >= mHigh[suit]) {
+                mLow[suit] = mHigh[suit];
+                mHigh[suit] = value;
+            } else {
+                mLow[suit] = value;
+            }
+        }
+    }
+
+    // The foundation card can go to, or -1. Needs mLow and mHigh current.
+    private int findPile(final int card) {
+        int value = Card.GetValue(card);
+        int suit = Card.GetSuit(card);
+        if (mLow[suit] != value - 1 && mHigh[suit] != value - 1) {
+            return -1;
+        }
+        for (int i = FOUNDATION; i < FOUNDATION + 8; i++) {
+            int top = mAnchor[i].getTopCard();
+            if (value == 1 ? top == Card.NONE : top == card - 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.List;
+
+// Best first solver for Freecell, safe cards are played up as soon as they
+// can be. Which cards can move together comes straight from FreecellStack
+// and CountFreeSpaces, so anything it finds is a legal game.
+class FreecellSolver extends Solver {
+
+    // Anchor layout from Freecell.Init
+    private static final int CELL = 0;
+    private static final int FOUNDATION = 4;
+    private static final int STACK = 8;
+
+    public FreecellSolver(final GameState state, final GameOptions options) {
+        super(state, options);
+    }
+
+    @Override
+    protected boolean search() {
+        return bestFirst();
+    }
+
+    @Override
+    protected void playForcedMoves() {
+        boolean played = true;
+        while (played) {
+            played = false;
+            readFoundations(FOUNDATION);
+            for (int i = 0; i < 16 && !played; i++) {
+                if (i >= FOUNDATION && i < STACK) {
+                    continue;
+                }
+                int card = mAnchor[i].getTopCard();
+                if (card != Card.NONE && isSafe(card)) {
+                    int sink = findSink(card, FOUNDATION);
+                    if (sink != -1) {
+                        mRules.applyMove(new Move(i, sink, 1, false, false));
+                        played = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // How far from done the position looks, 0 once everything is up. Each
+    // card still out counts, more so if it's sitting on a lower card it has
+    // to be moved off of, and so does every card on top of one that could go
+    // up next. Filled cells count against it and empty columns for it.
+    @Override
+    protected int score() {
+        readFoundations(FOUNDATION);
+        int home = mFoundation[0] + mFoundation[1] + mFoundation[2] + mFoundation[3];
+        if (home == 52) {
+            return 0;
+        }
+        int score = (52 - home) * 4;
+        for (int i = CELL; i < CELL + 4; i++) {
+            if (mAnchor[i].GetCount() > 0) {
+                score += 6;
+            }
+        }
+        for (int i = STACK; i < STACK + 8; i++) {
+            CardAnchor anchor = mAnchor[i];
+            int count = anchor.GetCount();
+            if (count == 0) {
+                score -= 6;
+                continue;
+            }
+            int lowest = Card.KING + 1;
+            for (int j = 0; j < count; j++) {
+                int card = anchor.getCard(j);
+                int value = Card.GetValue(card);
+                if (value > lowest) {
+                    score += 3;
+                } else {
+                    lowest = value;
+                }
+                if (value == mFoundation[Card.GetSuit(card)] + 1) {
+                    score += count - 1 - j;
+                }
+            }
+        }
+        return score < 1 ? 1 : score;
+    }
+
+    // Cells and columns can be shuffled around without changing anything, so
+    // the hash ignores which cell or column a card is in.
+    @Override
+    protected long positionHash() {
+        long hash = 0;
+        for (int i = CELL; i < STACK; i++) {
+            int card = mAnchor[i].getTopCard();
+            if (card != Card.NONE) {
+                hash ^= Zobrist.card(i < FOUNDATION ? CELL : FOUNDATION, 0, card);
+            }
+        }
+        for (int i = STACK; i < STACK + 8; i++) {
+            CardAnchor anchor = mAnchor[i];
+            long column = 0;
+            for (int j = 0; j < anchor.GetCount(); j++) {
+                column ^= Zobrist.card(STACK, j, anchor.getCard(j));
+            }
+            hash += Zobrist.mix(column);
+        }
+        return hash;
+    }
+
+    @Override
+    protected void generateMoves(final List<Move> moves) {
+        readFoundations(FOUNDATION);
+        int firstCell = -1;
+        int firstEmpty = -1;
+        for (int i = CELL; i < CELL + 4 && firstCell == -1; i++) {
+            if (mAnchor[i].GetCount() == 0) {
+                firstCell = i;
+            }
+        }
+        for (int i = STACK; i < STACK + 8 && firstEmpty == -1; i++) {
+            if (mAnchor[i].GetCount() == 0) {
+                firstEmpty = i;
+            }
+        }
+
+        // Up to the foundations.
+        for (int i = CELL; i < STACK + 8; i++) {
+            if (i == FOUNDATION) {
+                i = STACK;
+            }
+            int card = mAnchor[i].getTopCard();
+            if (card != Card.NONE) {
+                int sink = findSink(card, FOUNDATION);
+                if (sink != -1) {
+                    moves.add(new Move(i, sink, 1, false, false));
+                }
+            }
+        }
+
+        // Column to column, as many cards as it takes to land on the other
+        // column, or as many as can move to an empty one. Moving fewer to an
+        // empty one is left out (see pruned).
+        for (int from = STACK; from < STACK + 8; from++) {
+            CardAnchor anchor = mAnchor[from];
+            int count = anchor.GetCount();
+            if (count == 0) {
+                continue;
+            }
+            int movable = anchor.GetMovableCount();
+            int top = anchor.GetCount() - 1;
+            for (int to = STACK; to < STACK + 8; to++) {
+                CardAnchor target = mAnchor[to];
+                if (to == from) {
+                    continue;
+                }
+                if (target.GetCount() == 0) {
+                    if (to != firstEmpty) {
+                        continue;
+                    }
+                    // Moving a whole column into an empty one gets nowhere.
+                    int n = movable < count ? movable : count - 1;
+                    if (n > 0 && target.canDrop(anchor.getCard(count - n), n)) {
+                        moves.add(new Move(from, to, n, false, false));
+                        if (n > 1) {
+                            pruned();
+                        }
+                    }
+                    continue;
+                }
+                int want = Card.GetValue(target.getTopCard()) - 1;
+                int n = want - Card.GetValue(anchor.getCard(top)) + 1;
+                if (n >= 1 && n <= movable && target.canDrop(anchor.getCard(count - n), n)) {
+                    moves.add(new Move(from, to, n, false, false));
+                }
+            }
+        }
+
+        // Cells back down.
+        for (int from = CELL; from < CELL + 4; from++) {
+            int card = mAnchor[from].getTopCard();
+            if (card == Card.NONE) {
+                continue;
+            }
+            for (int to = STACK; to < STACK + 8; to++) {
+                if (mAnchor[to].GetCount() == 0 && to != firstEmpty) {
+                    continue;
+                }
+                if (mAnchor[to].canDrop(card, 1)) {
+                    moves.add(new Move(from, to, 1, false, false));
+                }
+            }
+        }
+
+        // Columns up into a cell.
+        if (firstCell != -1) {
+            for (int from = STACK; from < STACK + 8; from++) {
+                if (mAnchor[from].GetCount() > 0) {
+                    moves.add(new Move(from, firstCell, 1, false, false));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+
+// Runs a game without a view. It drives the same Rules and anchors the view
+// does, the only difference is that cards land immediately instead of being
+// animated, and events are handled as soon as they're posted. Nothing in here
+// (or in what it uses) touches android.*, so it runs on a plain JVM.
+public class GameEngine {
+
+    private int mType;
+    private GameOptions mOptions;
+    private GameListener mListener;
+    private Rules mRules;
+    private UndoTree mMoveHistory;
+    private CardAnchor mDealFrom;
+
+    public GameEngine(final int type, final GameOptions options) {
+        this(type, options, null);
+    }
+
+    // listener is optional, it gets told about wins and refreshes.
+    public GameEngine(final int type, final GameOptions options, final GameListener listener) {
+        mType = type;
+        mOptions = options;
+        mListener = listener;
+        mMoveHistory = new UndoTree();
+        newGame();
+    }
+
+    public GameEngine(final GameState state, final GameOptions options, final GameListener listener) {
+        mType = state.getType();
+        mOptions = options;
+        mListener = listener;
+        mMoveHistory = new UndoTree();
+        start(state);
+    }
+
+    // Deals the game numbered seed, see Deck.
+    public GameEngine(final int type, final long seed, final GameOptions options, final GameListener listener) {
+        mType = type;
+        mOptions = options;
+        mListener = listener;
+        mMoveHistory = new UndoTree();
+        newGame(seed);
+    }
+
+    public void newGame() {
+        newGame(Rules.newSeed());
+    }
+
+    public void newGame(final long seed) {
+        clear();
+        start(Rules.CreateRules(mType, seed, mOptions, mListener, mMoveHistory, null));
+    }
+
+    private void start(final GameState state) {
+        clear();
+        start(Rules.CreateRules(mType, state, mOptions, mListener, mMoveHistory, null));
+    }
+
+    private void clear() {
+        mMoveHistory.clear();
+        if (mRules != null) {
+            mRules.stopHint();
+        }
+    }
+
+    private void start(final Rules rules) {
+        mRules = rules;
+        mDealFrom = null;
+        CardAnchor[] anchor = mRules.GetAnchorArray();
+        for (int i = 0; i < anchor.length; i++) {
+            if (anchor[i].GetType() == CardAnchor.DEAL_FROM) {
+                mDealFrom = anchor[i];
+                break;
+            }
+        }
+    }
+
+    public Rules getRules() {
+        return mRules;
+    }
+
+    public CardAnchor[] getAnchors() {
+        return mRules.GetAnchorArray();
+    }
+
+    public MoveLog getMoveHistory() {
+        return mMoveHistory;
+    }
+
+    public GameState getState() {
+        return GameState.capture(mRules);
+    }
+
+    public long getSeed() {
+        return mRules.getSeed();
+    }
+
+    public boolean isWon() {
+        return mRules.isWon();
+    }
+
+    // See Rules.isStuck.
+    public boolean isStuck() {
+        return mRules.isStuck();
+    }
+
+    // Same as tapping the deck.
+    public boolean deal() {
+        if (mDealFrom == null) {
+            return false;
+        }
+        int historySize = mMoveHistory.size();
+        mRules.EventAlert(Rules.EVENT_DEAL, mDealFrom);
+        mRules.HandleEvents();
+        return mMoveHistory.size() != historySize;
+    }
+
+    // Every move that can be made now, see Rules.generateMoves.
+    public int getMoves(final int[] moves) {
+        return mRules.generateMoves(moves);
+    }
+
+    // Makes a move from getMoves the way the player would, so automatic
+    // moves follow it as usual.
+    public boolean play(final int packed) {
+        int from = Move.getFrom(packed);
+        int to = Move.getToBegin(packed);
+        if (mDealFrom != null && (from == mDealFrom.GetNumber() || to == mDealFrom.GetNumber())) {
+            return deal();
+        }
+        return move(from, to, Move.getCount(packed));
+    }
+
+    public boolean canMove(final int from, final int to, final int count) {
+        CardAnchor[] anchor = mRules.GetAnchorArray();
+        if (from == to || count < 1 || count > anchor[from].GetMovableCount()) {
+            return false;
+        }
+        return anchor[to].canDrop(anchor[from].getCard(anchor[from].GetCount() - count), count);
+    }
+
+    // Picks up the top count cards of from and drops them on to, exactly as
+    // SolitaireView does when a drag is released over an anchor.
+    public boolean move(final int from, final int to, final int count) {
+        if (!canMove(from, to, count)) {
+            return false;
+        }
+        CardAnchor[] anchor = mRules.GetAnchorArray();
+        int[] cards = new int[count];
+        for (int i = count - 1; i >= 0; i--) {
+            cards[i] = anchor[from].PopCard();
+        }
+        boolean unhide = (anchor[from].GetVisibleCount() == 0 && anchor[from].GetCount() > 0);
+        mMoveHistory.push(Move.pack(from, to, count, false, unhide));
+        anchor[from].UnhideTopCard();
+        for (int i = 0; i < count; i++) {
+            anchor[to].AddCard(cards[i]);
+        }
+        mRules.HandleEvents();
+        return true;
+    }
+
+    // Flings the top card of from, the rules decide where (if anywhere) it goes.
+    public boolean fling(final int from) {
+        CardAnchor anchor = mRules.GetAnchorArray()[from];
+        if (anchor.GetMovableCount() == 0) {
+            return false;
+        }
+        int card = anchor.PopCard();
+        if (!mRules.Fling(anchor, card)) {
+            anchor.AddCard(card);
+            mRules.HandleEvents();
+            return false;
+        }
+        mRules.HandleEvents();
+        return true;
+    }
+
+    public boolean undo() {
+        return mRules.undo();
+    }
+
+    // Plays again the move undo() last took back. Returns false if there
+    // isn't one.
+    public boolean redo() {
+        if (!mMoveHistory.canRedo()) {
+            return false;
+        }
+        mRules.applyMove(mMoveHistory.getRedo());
+        return true;
+    }
+
+    public Move getHint(final long maxMillis) {
+        return mRules.getHint(maxMillis);
+    }
+
+    // Optional, draws every anchor with whatever renderer is handed in.
+    public void draw(final CardRenderer renderer) {
+        CardAnchor[] anchor = mRules.GetAnchorArray();
+        for (int i = 0; i < anchor.length; i++) {
+            anchor[i].Draw(renderer);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+// A finished game in as few bytes as it'll go: the variant, the options that
+// change the deal or the rules, the seed, and then the moves from the deal on.
+// Everything else follows from those, so a record plays back through a
+// GameEngine to exactly the position it was taken from, and the hash of that
+// position is kept as well so replay can be checked.
+//
+// Records are written one after another behind a short header (see Writer),
+// and Reader reads them back one at a time into the same GameRecord, so an
+// archive of any size is scanned in one pass in the memory of its longest
+// game. From the command line
+//
+//   java co.cutely.solitaire.GameRecord <file> ...
+//
+// replays every record in the files and says how many came out right.
+//
+// A move is a varint. 0 means the same move as the one before (dealing from
+// the stock over and over), anything else is 1 more than its fields packed
+// with the ones that are nearly always 0 at the top:
+//
+//   from (5 bits), toBegin (5), flags (3), count (7), toEnd - toBegin
+//
+// so most moves are two bytes, and a Spider deal's range of anchors is just a
+// bigger number.
+public class GameRecord {
+
+    private static final byte[] MAGIC = { 'S', 'R', 'E', 'C' };
+    private static final int VERSION = 1;
+
+    // Option flags
+    private static final int DEAL_THREE = 1;
+    private static final int STYLE_NORMAL = 2;
+    private static final int MS_DEALS = 4;
+
+    private static final int ANCHOR_BITS = 5;
+    private static final int FLAG_BITS = 3;
+    private static final int COUNT_BITS = 7;
+    // A corrupt count shouldn't have us allocate the world
+    private static final int MAX_MOVES = 1 << 20;
+
+    private int mType;
+    private int mOptions;
+    private int mSpiderSuits;
+    private long mSeed;
+    private long mHash;
+    private int[] mMoves;
+    private int mMoveCount;
+
+    public GameRecord() {
+        mMoves = new int[256];
+    }
+
+    // Starts a record of the game numbered seed, with no moves yet. Only the
+    // options that matter to the deal and the rules are kept.
+    public void set(final int type, final GameOptions options, final long seed) {
+        mType = type;
+        mOptions = (options.getBoolean("SolitaireDealThree", false) ? DEAL_THREE : 0)
+                | (options.getBoolean("SolitaireStyleNormal", true) ? STYLE_NORMAL : 0)
+                | (options.getBoolean("FreecellMSDeals", false) ? MS_DEALS : 0);
+        mSpiderSuits = options.getInt("SpiderSuits", 4);
+        mSeed = seed;
+        mHash = 0;
+        mMoveCount = 0;
+    }
+
+    // The game rules is playing, history being every move since the deal.
+    public void set(final Rules rules, final GameOptions options, final MoveLog history) {
+        set(rules.GetType(), options, rules.getSeed());
+        for (int i = 0; i < history.size(); i++) {
+            addMove(history.get(i));
+        }
+        mHash = rules.getHash();
+    }
+
+    // A solver's way through the game numbered seed.
+    public void set(final int type, final GameOptions options, final long seed, final List<Move> solution, final long hash) {
+        set(type, options, seed);
+        for (int i = 0; i < solution.size(); i++) {
+            addMove(solution.get(i).pack());
+        }
+        mHash = hash;
+    }
+
+    public void addMove(final int packed) {
+        if (mMoveCount == mMoves.length) {
+            int[] moves = new int[mMoveCount * 2];
+            System.arraycopy(mMoves, 0, moves, 0, mMoveCount);
+            mMoves = moves;
+        }
+        mMoves[mMoveCount++] = packed;
+    }
+
+    // What Rules.getHash should be once every move has been played.
+    public void setHash(final long hash) {
+        mHash = hash;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public long getHash() {
+        return mHash;
+    }
+
+    public int getMoveCount() {
+        return mMoveCount;
+    }
+
+    public int getMove(final int index) {
+        if (index < 0 || index >= mMoveCount) {
+            throw new IndexOutOfBoundsException("move " + index + " of " + mMoveCount);
+        }
+        return mMoves[index];
+    }
+
+    // Options that deal and play the same game. Nothing moves by itself, the
+    // record already has every automatic move in it.
+    public GameOptions getOptions() {
+        return new DefaultOptions().putBoolean("SolitaireDealThree", (mOptions & DEAL_THREE) != 0)
+                .putBoolean("SolitaireStyleNormal", (mOptions & STYLE_NORMAL) != 0).putBoolean("FreecellMSDeals", (mOptions & MS_DEALS) != 0)
+                .putInt("SpiderSuits", mSpiderSuits).putInt("AutoMoveLevel", Rules.AUTO_MOVE_NEVER);
+    }
+
+    // Deals the game again and plays every move.
+    public GameEngine replay() {
+        GameEngine engine = new GameEngine(mType, mSeed, getOptions(), null);
+        Rules rules = engine.getRules();
+        for (int i = 0; i < mMoveCount; i++) {
+            rules.applyMove(mMoves[i]);
+        }
+        return engine;
+    }
+
+    // Whether replay ends up where the game did.
+    public boolean verify() {
+        return replay().getRules().getHash() == mHash;
+    }
+
+    private static int encode(final int packed) {
+        int from = Move.getFrom(packed);
+        int toBegin = Move.getToBegin(packed);
+        int toEnd = Move.getToEnd(packed);
+        if (from >= 1 << ANCHOR_BITS || toBegin >= 1 << ANCHOR_BITS || toEnd < toBegin || Move.getFlags(packed) >= 1 << FLAG_BITS) {
+            throw new IllegalArgumentException("move can't be recorded: 0x" + Integer.toHexString(packed));
+        }
+        int fields = toEnd - toBegin;
+        fields = fields << COUNT_BITS | Move.getCount(packed);
+        fields = fields << FLAG_BITS | Move.getFlags(packed);
+        fields = fields << ANCHOR_BITS | toBegin;
+        fields = fields << ANCHOR_BITS | from;
+        return fields + 1;
+    }
+
+    private static int decode(final int code) {
+        int fields = code - 1;
+        int from = fields & ((1 << ANCHOR_BITS) - 1);
+        fields >>>= ANCHOR_BITS;
+        int toBegin = fields & ((1 << ANCHOR_BITS) - 1);
+        fields >>>= ANCHOR_BITS;
+        int flags = fields & ((1 << FLAG_BITS) - 1);
+        fields >>>= FLAG_BITS;
+        int count = fields & ((1 << COUNT_BITS) - 1);
+        fields >>>= COUNT_BITS;
+        return Move.pack(from, toBegin, toBegin + fields, count, flags);
+    }
+
+    // Writes records to a stream, which had better be buffered.
+    public static class Writer {
+        private OutputStream mOut;
+
+        public Writer(final OutputStream out) throws IOException {
+            mOut = out;
+            mOut.write(MAGIC);
+            mOut.write(VERSION);
+        }
+
+        public void write(final GameRecord record) throws IOException {
+            writeVarint(record.mType);
+            writeVarint(record.mOptions);
+            writeVarint(record.mSpiderSuits);
+            writeLong(record.mSeed);
+            writeLong(record.mHash);
+            writeVarint(record.mMoveCount);
+            for (int i = 0; i < record.mMoveCount; i++) {
+                int move = record.mMoves[i];
+                writeVarint(i > 0 && move == record.mMoves[i - 1] ? 0 : encode(move));
+            }
+        }
+
+        public void flush() throws IOException {
+            mOut.flush();
+        }
+
+        public void close() throws IOException {
+            mOut.close();
+        }
+
+        private void writeVarint(final int value) throws IOException {
+            int v = value;
+            while ((v & ~0x7f) != 0) {
+                mOut.write((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            mOut.write(v);
+        }
+
+        private void writeLong(final long value) throws IOException {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                mOut.write((int) (value >>> shift));
+            }
+        }
+    }
+
+    // Reads back what Writer wrote, a record at a time.
+    public static class Reader {
+        private InputStream mIn;
+
+        // Throws IOException if the stream doesn't start with a header this
+        // version knows.
+        public Reader(final InputStream in) throws IOException {
+            mIn = in;
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (readByte() != MAGIC[i]) {
+                    throw new IOException("not a game record file");
+                }
+            }
+            if (readByte() != VERSION) {
+                throw new IOException("unknown game record version");
+            }
+        }
+
+        // Fills record with the next one, reusing its moves array. Returns
+        // false at the end of the stream.
+        public boolean next(final GameRecord record) throws IOException {
+            int first = mIn.read();
+            if (first < 0) {
+                return false;
+            }
+            record.mType = readVarint(first);
+            record.mOptions = readVarint(readByte());
+            record.mSpiderSuits = readVarint(readByte());
+            record.mSeed = readLong();
+            record.mHash = readLong();
+            int count = readVarint(readByte());
+            if (count < 0 || count > MAX_MOVES) {
+                throw new IOException("bad game record");
+            }
+            record.mMoveCount = 0;
+            for (int i = 0; i < count; i++) {
+                int code = readVarint(readByte());
+                if (code == 0 && i == 0) {
+                    throw new IOException("bad game record");
+                }
+                record.addMove(code == 0 ? record.mMoves[i - 1] : decode(code));
+            }
+            return true;
+        }
+
+        public void close() throws IOException {
+            mIn.close();
+        }
+
+        private int readByte() throws IOException {
+            int b = mIn.read();
+            if (b < 0) {
+                throw new EOFException("game record cut short");
+            }
+            return b;
+        }
+
+        private int readVarint(final int first) throws IOException {
+            int value = first & 0x7f;
+            int b = first;
+            for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+                if (shift > 28) {
+                    throw new IOException("bad game record");
+                }
+                b = readByte();
+                value |= (b & 0x7f) << shift;
+            }
+            return value;
+        }
+
+        private long readLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | readByte();
+            }
+            return value;
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: GameRecord <file> ...");
+            System.exit(1);
+        }
+        GameRecord record = new GameRecord();
+        long count = 0;
+        long moves = 0;
+        long won = 0;
+        long wrong = 0;
+        for (int i = 0; i < args.length; i++) {
+            Reader reader = new Reader(new BufferedInputStream(new FileInputStream(args[i]), 1 << 16));
+            try {
+                while (reader.next(record)) {
+                    Rules rules = record.replay().getRules();
+                    count++;
+                    moves += record.getMoveCount();
+                    if (rules.getHash() != record.getHash()) {
+                        wrong++;
+                        System.err.println("seed " + record.getSeed() + " doesn't replay to where it ended");
+                    } else if (rules.isWon()) {
+                        won++;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        System.out.println(count + " games, " + moves + " moves: " + won + " won, " + (count - won - wrong) + " unfinished, " + wrong + " wrong");
+    }
+}
@@ -0,0 +1,126 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+// Everything needed to put a game back on the table, and the seed the deal
+// was made from.
+public class GameState {
+
+    private int mType;
+    private int mCardAnchorCount;
+    private int mCardCount;
+    private int[] mAnchorCardCount;
+    private int[] mAnchorHiddenCount;
+    private int[] mValue;
+    private int[] mSuit;
+    private int mRulesExtra;
+    private int mScore;
+    private long mSeed;
+
+    private GameState() {
+    }
+
+    public static GameState capture(final Rules rules) {
+        GameState state = new GameState();
+        CardAnchor[] anchor = rules.GetAnchorArray();
+        int cardCount = rules.GetCardCount();
+
+        state.mType = rules.GetType();
+        state.mCardAnchorCount = anchor.length;
+        state.mAnchorCardCount = new int[anchor.length];
+        state.mAnchorHiddenCount = new int[anchor.length];
+        state.mValue = new int[cardCount];
+        state.mSuit = new int[cardCount];
+
+        cardCount = 0;
+        for (int i = 0; i < anchor.length; i++) {
+            state.mAnchorCardCount[i] = anchor[i].GetCount();
+            state.mAnchorHiddenCount[i] = anchor[i].GetHiddenCount();
+            byte[] card = anchor[i].GetCards();
+            for (int j = 0; j < state.mAnchorCardCount[i]; j++, cardCount++) {
+                state.mValue[cardCount] = Card.GetValue(card[j]);
+                state.mSuit[cardCount] = Card.GetSuit(card[j]);
+            }
+        }
+        state.mCardCount = cardCount;
+        state.mRulesExtra = rules.GetRulesExtra();
+        state.mScore = rules.GetScore();
+        state.mSeed = rules.getSeed();
+        return state;
+    }
+
+    public static GameState read(final ObjectInput in) throws IOException, ClassNotFoundException {
+        GameState state = new GameState();
+        state.mCardAnchorCount = in.readInt();
+        state.mCardCount = in.readInt();
+        state.mType = in.readInt();
+        state.mAnchorCardCount = (int[]) in.readObject();
+        state.mAnchorHiddenCount = (int[]) in.readObject();
+        state.mValue = (int[]) in.readObject();
+        state.mSuit = (int[]) in.readObject();
+        state.mRulesExtra = in.readInt();
+        state.mScore = in.readInt();
+        state.mSeed = in.readLong();
+        return state;
+    }
+
+    public void write(final ObjectOutput out) throws IOException {
+        out.writeInt(mCardAnchorCount);
+        out.writeInt(mCardCount);
+        out.writeInt(mType);
+        out.writeObject(mAnchorCardCount);
+        out.writeObject(mAnchorHiddenCount);
+        out.writeObject(mValue);
+        out.writeObject(mSuit);
+        out.writeInt(mRulesExtra);
+        out.writeInt(mScore);
+        out.writeLong(mSeed);
+    }
+
+    // Puts the cards back onto freshly created anchors. Returns false if the
+    // state doesn't fit the layout, in which case nothing has been touched.
+    public boolean restore(final CardAnchor[] anchor, final int cardCount) {
+        if (mCardAnchorCount != anchor.length || mCardCount != cardCount) {
+            return false;
+        }
+        int cardIdx = 0;
+        for (int i = 0; i < anchor.length; i++) {
+            for (int j = 0; j < mAnchorCardCount[i]; j++, cardIdx++) {
+                anchor[i].AddCard(Card.make(mValue[cardIdx], mSuit[cardIdx]));
+            }
+            anchor[i].SetHiddenCount(mAnchorHiddenCount[i]);
+        }
+        return true;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public int getRulesExtra() {
+        return mRulesExtra;
+    }
+
+    public int getScore() {
+        return mScore;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+}
@@ -0,0 +1,386 @@
+/*
+  Copyright 2008 Google Inc.
+  
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.HashMap;
+
+// New Abstract
+class GenericAnchor extends CardAnchor {
+
+    // Sequence start values
+    public static final int START_ANY = 1; // An empty stack can take any card.
+    public static final int START_KING = 2; // An empty stack can take only a king.
+
+    // Value Sequences
+    public static final int SEQ_ANY = 1; // You can build as you like
+    public static final int SEQ_SEQ = 2; // Building only allows sequential
+    public static final int SEQ_ASC = 3; // Ascending only
+    public static final int SEQ_DSC = 4; // Descending only
+
+    // Suit Sequences that limits how adding cards to the stack works
+    public static final int SUIT_ANY = 1; // Build doesn't care about suite
+    public static final int SUIT_RB = 2; // Must alternate Red & Black
+    public static final int SUIT_OTHER = 3;// As long as different
+    public static final int SUIT_COLOR = 4;// As long as same color
+    public static final int SUIT_SAME = 5; // As long as same suit
+
+    // Pickup & Dropoff Behavior
+    public static final int PACK_NONE = 1; // Interaction in this mode not allowed
+    public static final int PACK_ONE = 2; // Can only accept 1 card
+    public static final int PACK_MULTI = 3; // Can accept multiple cards
+    public static final int PACK_FIXED = 4; // Don't think this will ever be used
+    public static final int PACK_LIMIT_BY_FREE = 5; // For freecell style movement
+
+    // Anchor Display (Hidden vs. Shown faces)
+    public static final int DISPLAY_ALL = 1; // All cards are shown
+    public static final int DISPLAY_HIDE = 2; // All cards are hidden
+    public static final int DISPLAY_MIX = 3; // Uses a mixture
+    public static final int DISPLAY_ONE = 4; // Displays one only
+
+    // Hack to fix Spider Dealing
+    public static final int DEALHACK = 1;
+
+    // Compiled rules by what they were compiled from, see getTable
+    private static final HashMap<Integer, long[]> TABLES = new HashMap<Integer, long[]>();
+
+    protected static final int SMALL_SPACING = 7;
+    protected static final int HIDDEN_SPACING = 3;
+
+    protected int mSpacing;
+    protected boolean mHideHidden;
+    protected int mMaxHeight;
+
+    public GenericAnchor() {
+        super();
+        SetStartSeq(GenericAnchor.SEQ_ANY);
+        SetBuildSeq(GenericAnchor.SEQ_ANY);
+        SetBuildWrap(false);
+        SetBuildSuit(GenericAnchor.SUIT_ANY);
+        SetDropoff(GenericAnchor.PACK_NONE);
+        SetPickup(GenericAnchor.PACK_NONE);
+        SetDisplay(GenericAnchor.DISPLAY_ALL);
+        mSpacing = GetMaxSpacing();
+        mHideHidden = false;
+        mMaxHeight = Card.HEIGHT;
+    }
+
+    @Override
+    public void SetMaxHeight(final int maxHeight) {
+        mMaxHeight = maxHeight;
+    }
+
+    @Override
+    public float getCardY(final int idx) {
+        CheckSizing();
+        if (idx < mHiddenCount) {
+            return mHideHidden ? mY : mY + HIDDEN_SPACING * idx;
+        }
+        int startY = mHideHidden ? HIDDEN_SPACING : mHiddenCount * HIDDEN_SPACING;
+        return (int) mY + startY + (idx - mHiddenCount) * mSpacing;
+    }
+
+    @Override
+    public void AddCard(final int card) {
+        super.AddCard(card);
+        if (mHACK == GenericAnchor.DEALHACK) {
+            mRules.EventAlert(Rules.EVENT_STACK_ADD, this);
+        }
+    }
+
+    @Override
+    public boolean canDrop(final int card, final int count) {
+        if (mDROPOFF == GenericAnchor.PACK_NONE) {
+            return false;
+        }
+        return CanBuildCard(card);
+    }
+
+    @Override
+    protected boolean follows(final int lower, final int upper) {
+        if (mMoveTable == null) {
+            mMoveTable = getTable(false, mMOVESEQ, mMOVESUIT, mMOVEWRAP);
+        }
+        return (mMoveTable[lower] & (1L << upper)) != 0;
+    }
+
+    public boolean CanBuildCard(final int card) {
+        // SEQ_ANY will allow all
+        if (mBUILDSEQ == GenericAnchor.SEQ_ANY) {
+            return true;
+        }
+        // Rules for empty stacks
+        if (mCardCount == 0) {
+            switch (mSTARTSEQ) {
+                case GenericAnchor.START_KING:
+                    return Card.GetValue(card) == Card.KING;
+                case GenericAnchor.START_ANY:
+                default:
+                    return true;
+            }
+        }
+        if (mBuildTable == null) {
+            mBuildTable = getTable(true, mBUILDSEQ, mBUILDSUIT, false);
+        }
+        return (mBuildTable[mCard[mCardCount - 1]] & (1L << card)) != 0;
+    }
+
+    @Override
+    public void Draw(final CardRenderer renderer) {
+        if (mCardCount == 0) {
+            renderer.DrawEmptyAnchor(mX, mY, mDone);
+            return;
+        }
+        switch (mDISPLAY) {
+            case GenericAnchor.DISPLAY_ALL:
+                for (int i = 0; i < mCardCount; i++) {
+                    renderer.DrawCard(mCard[i], mX, getCardY(i));
+                }
+                break;
+            case GenericAnchor.DISPLAY_HIDE:
+                for (int i = 0; i < mCardCount; i++) {
+                    renderer.DrawHiddenCard(mX, getCardY(i));
+                }
+                break;
+            case GenericAnchor.DISPLAY_MIX:
+                for (int i = 0; i < mCardCount; i++) {
+                    if (i < mHiddenCount) {
+                        renderer.DrawHiddenCard(mX, getCardY(i));
+                    } else {
+                        renderer.DrawCard(mCard[i], mX, getCardY(i));
+                    }
+                }
+                break;
+            case GenericAnchor.DISPLAY_ONE:
+                for (int i = 0; i < mCardCount; i++) {
+                    if (i < mCardCount - 1) {
+                        renderer.DrawHiddenCard(mX, getCardY(i));
+                    } else {
+                        renderer.DrawCard(mCard[i], mX, getCardY(i));
+                    }
+                }
+                break;
+        }
+    }
+
+    @Override
+    public boolean ExpandStack(final float x, final float y) {
+        if (IsOverDeck(x, y)) {
+            return (GetMovableCount() > 0);
+            /*
+             * if (mHiddenCount >= mCardCount) { mHiddenCount = mCardCount == 0 ? 0 : mCardCount - 1; } else if (mCardCount - mHiddenCount > 1) { return true; }
+             */
+        }
+        return false;
+    }
+
+    @Override
+    public boolean CanMoveStack(final float x, final float y) {
+        return ExpandStack(x, y);
+    }
+
+    @Override
+    public int getStackCount() {
+        return GetMovableCount();
+    }
+
+    @Override
+    public int GetMovableCount() {
+        int visibleCount = GetVisibleCount();
+        if (visibleCount == 0 || mPICKUP == GenericAnchor.PACK_NONE) {
+            return 0;
+        }
+        int seq_allowed = Math.min(getRun(), visibleCount);
+
+        switch (mPICKUP) {
+            case GenericAnchor.PACK_NONE:
+                return 0;
+            case GenericAnchor.PACK_ONE:
+                seq_allowed = Math.min(1, seq_allowed);
+                break;
+            case GenericAnchor.PACK_MULTI:
+                break;
+            case GenericAnchor.PACK_FIXED:
+                // seq_allowed = Math.min( xmin, seq_allowed);
+                break;
+            case GenericAnchor.PACK_LIMIT_BY_FREE:
+                seq_allowed = Math.min(mRules.CountFreeSpaces() + 1, seq_allowed);
+                break;
+        }
+        return seq_allowed;
+    }
+
+    // The rules as tables: for each card (as the top of the stack for
+    // building, as the lower card for moving) a bit for every card that may
+    // go on it. They only depend on the rules, so anchors with the same rules
+    // share them.
+    private static synchronized long[] getTable(final boolean build, final int seq, final int suit, final boolean wrap) {
+        Integer key = Integer.valueOf((build ? 1 : 0) | seq << 1 | suit << 5 | (wrap ? 1 << 9 : 0));
+        long[] table = TABLES.get(key);
+        if (table == null) {
+            table = new long[52];
+            for (int lower = 0; lower < 52; lower++) {
+                for (int upper = 0; upper < 52; upper++) {
+                    if (build ? canBuild(lower, upper, seq, suit) : canMove(lower, upper, seq, suit, wrap)) {
+                        table[lower] |= 1L << upper;
+                    }
+                }
+            }
+            TABLES.put(key, table);
+        }
+        return table;
+    }
+
+    // Whether card can be built on topCard, where building goes by sequence.
+    private static boolean canBuild(final int topCard, final int card, final int seq, final int suitSeq) {
+        int value = Card.GetValue(card);
+        int suit = Card.GetSuit(card);
+        int tvalue = Card.GetValue(topCard);
+        int tsuit = Card.GetSuit(topCard);
+        // Fail if sequence is wrong
+        switch (seq) {
+            case GenericAnchor.SEQ_ASC:
+                if (value - tvalue != 1) {
+                    return false;
+                }
+                break;
+            case GenericAnchor.SEQ_DSC:
+                if (tvalue - value != 1) {
+                    return false;
+                }
+                break;
+            case GenericAnchor.SEQ_SEQ:
+                if (Math.abs(tvalue - value) != 1) {
+                    return false;
+                }
+                break;
+        }
+        // Fail if suit is wrong
+        switch (suitSeq) {
+            case GenericAnchor.SUIT_RB:
+                if (Math.abs(tsuit - suit) % 2 == 0) {
+                    return false;
+                }
+                break;
+            case GenericAnchor.SUIT_OTHER:
+                if (tsuit == suit) {
+                    return false;
+                }
+                break;
+            case GenericAnchor.SUIT_COLOR:
+                if (Math.abs(tsuit - suit) != 2) {
+                    return false;
+                }
+                break;
+            case GenericAnchor.SUIT_SAME:
+                if (tsuit != suit) {
+                    return false;
+                }
+                break;
+        }
+        // Passes all rules
+        return true;
+    }
+
+    // Whether upper sitting on lower can be picked up along with it.
+    private static boolean canMove(final int lower, final int upper, final int seq, final int suit, final boolean wrap) {
+        switch (seq) {
+            case GenericAnchor.SEQ_ASC:
+                if (!isSeqAsc(lower, upper, wrap)) {
+                    return false;
+                }
+                break;
+            case GenericAnchor.SEQ_DSC:
+                if (!isSeqAsc(upper, lower, wrap)) {
+                    return false;
+                }
+                break;
+            case GenericAnchor.SEQ_SEQ:
+                if (!isSeqAsc(upper, lower, wrap) && !isSeqAsc(lower, upper, wrap)) {
+                    return false;
+                }
+                break;
+        }
+        switch (suit) {
+            case GenericAnchor.SUIT_COLOR:
+                return !isSuitRB(lower, upper);
+            case GenericAnchor.SUIT_OTHER:
+                return Card.GetSuit(lower) != Card.GetSuit(upper);
+            case GenericAnchor.SUIT_RB:
+                return isSuitRB(lower, upper);
+            case GenericAnchor.SUIT_SAME:
+                return Card.GetSuit(lower) == Card.GetSuit(upper);
+        }
+        return true;
+    }
+
+    // Whether card2 is one below card1 in value.
+    private static boolean isSeqAsc(final int card1, final int card2, final boolean wrap) {
+        int v1 = Card.GetValue(card1);
+        int v2 = Card.GetValue(card2);
+
+        if (v2 + 1 == v1) {
+            return true;
+        }
+        if (wrap) {
+            if (v2 == Card.KING && v1 == Card.ACE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSuitRB(final int card1, final int card2) {
+        return Card.isRed(card1) != Card.isRed(card2);
+    }
+
+    private void CheckSizing() {
+        if (mCardCount < 2 || mCardCount - mHiddenCount < 2) {
+            mSpacing = GetMaxSpacing();
+            mHideHidden = false;
+            return;
+        }
+        int max = mMaxHeight;
+        int hidden = mHiddenCount;
+        int showing = mCardCount - hidden;
+        int spaceLeft = max - (hidden * HIDDEN_SPACING) - Card.HEIGHT;
+        int spacing = spaceLeft / (showing - 1);
+
+        if (spacing < SMALL_SPACING && hidden > 1) {
+            mHideHidden = true;
+            spaceLeft = max - HIDDEN_SPACING - Card.HEIGHT;
+            spacing = spaceLeft / (showing - 1);
+        } else {
+            mHideHidden = false;
+            if (spacing > GetMaxSpacing()) {
+                spacing = GetMaxSpacing();
+            }
+        }
+        mSpacing = spacing;
+    }
+
+    // This can't be a constant as Card.HEIGHT isn't constant.
+    protected int GetMaxSpacing() {
+        return Card.HEIGHT / 3;
+    }
+
+    @Override
+    public float GetNewY() {
+        if (mCardCount == 0) {
+            return mY;
+        }
+        return getCardY(mCardCount - 1) + mSpacing;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.List;
+
+// Works out hints for Rules.getHint. The solver for the position runs on a
+// thread of its own, and a hint is whatever move it thinks best when the
+// caller's time is up. It keeps going after that, so asking again about the
+// same position gets a better answer, up to an actual win. Asking about a
+// different position throws the old search away, unless the game has just
+// gone further along a solution that's already been found.
+class HintEngine {
+
+    // How long one position is searched for, in total.
+    private static final long SEARCH_MILLIS = 10000;
+    private static final long SEARCH_NODES = 1000000;
+
+    private GameOptions mOptions;
+    private Solver mSolver;
+    private Thread mThread;
+    private long mHash;
+
+    public HintEngine(final GameOptions options) {
+        mOptions = options;
+    }
+
+    public synchronized Move getHint(final Rules rules, final long maxMillis) {
+        long deadline = System.currentTimeMillis() + maxMillis;
+        long hash = rules.getHash();
+        if (mSolver != null && hash != mHash) {
+            Move next = nextOnSolution(hash);
+            if (next != null) {
+                return next;
+            }
+        }
+        if (mSolver == null || hash != mHash) {
+            stop();
+            mHash = hash;
+            mSolver = Solver.create(GameState.capture(rules), mOptions);
+            final Solver solver = mSolver;
+            mThread = new Thread(new Runnable() {
+                public void run() {
+                    solver.solve(SEARCH_NODES, SEARCH_MILLIS);
+                }
+            });
+            mThread.setPriority(Thread.MIN_PRIORITY);
+            mThread.start();
+        }
+        try {
+            // Comes back early if the search is already over.
+            long wait = deadline - System.currentTimeMillis();
+            if (wait > 0) {
+                mThread.join(wait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return mSolver.getBestMove();
+    }
+
+    // If the position with hash is on the way through the solution, the move
+    // after it.
+    private Move nextOnSolution(final long hash) {
+        List<Move> solution = mSolver.getSolution();
+        long[] hashes = mSolver.getSolutionHashes();
+        if (solution == null) {
+            return null;
+        }
+        for (int i = 0; i < hashes.length - 1; i++) {
+            if (hashes[i] == hash) {
+                return solution.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    // Stops any search still going, for when the game goes away.
+    public synchronized void stop() {
+        if (mSolver != null) {
+            mSolver.cancel();
+            mSolver = null;
+            mThread = null;
+        }
+    }
+}
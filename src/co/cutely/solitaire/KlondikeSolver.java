@@ -0,0 +1,174 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.List;
+
+// Solver for NormalSolitaire, dealing one or three and with or without the
+// Vegas limit on redeals (that's mDealsLeft, which is part of the position).
+class KlondikeSolver extends Solver {
+
+    // Anchor layout from NormalSolitaire.Init
+    private static final int STOCK = 0;
+    private static final int WASTE = 1;
+    private static final int FOUNDATION = 2;
+    private static final int TABLEAU = 6;
+    private static final int TABLEAU_COUNT = 7;
+
+    private boolean mDealThree;
+
+    public KlondikeSolver(final GameState state, final GameOptions options) {
+        super(state, options);
+        mDealThree = options.getBoolean("SolitaireDealThree", false);
+    }
+
+    @Override
+    protected void generateMoves(final List<Move> moves) {
+        readFoundations(FOUNDATION);
+
+        // Cards that can go up. If one is safe there's no point trying anything else.
+        int wasteCard = mAnchor[WASTE].getTopCard();
+        if (wasteCard != Card.NONE) {
+            int sink = findSink(wasteCard, FOUNDATION);
+            if (sink != -1) {
+                Move move = new Move(WASTE, sink, 1, false, false);
+                if (isSafe(wasteCard)) {
+                    moves.clear();
+                    moves.add(move);
+                    return;
+                }
+                moves.add(move);
+            }
+        }
+        for (int i = TABLEAU; i < TABLEAU + TABLEAU_COUNT; i++) {
+            CardAnchor anchor = mAnchor[i];
+            int card = anchor.getTopCard();
+            if (card == Card.NONE) {
+                continue;
+            }
+            int sink = findSink(card, FOUNDATION);
+            if (sink != -1) {
+                int left = anchor.GetCount() - 1;
+                Move move = new Move(i, sink, 1, false, left > 0 && left == anchor.GetHiddenCount());
+                if (isSafe(card)) {
+                    moves.clear();
+                    moves.add(move);
+                    return;
+                }
+                moves.add(move);
+            }
+        }
+
+        // Tableau to tableau. Moves that turn a card over go first, with the
+        // most hidden cards first, then the ones that only help something up.
+        int firstTableau = moves.size();
+        int firstEmpty = -1;
+        for (int i = TABLEAU; i < TABLEAU + TABLEAU_COUNT; i++) {
+            if (mAnchor[i].GetCount() == 0) {
+                firstEmpty = i;
+                break;
+            }
+        }
+        for (int from = TABLEAU; from < TABLEAU + TABLEAU_COUNT; from++) {
+            CardAnchor anchor = mAnchor[from];
+            int count = anchor.GetCount();
+            int hidden = anchor.GetHiddenCount();
+            if (count == hidden) {
+                continue;
+            }
+            int bottom = anchor.getCard(hidden);
+            for (int to = TABLEAU; to < TABLEAU + TABLEAU_COUNT; to++) {
+                if (to == from) {
+                    continue;
+                }
+                int idx;
+                int top = mAnchor[to].getTopCard();
+                if (top == Card.NONE) {
+                    // Only a king, only from on top of something, and all
+                    // the empty columns are the same.
+                    if (to != firstEmpty || hidden == 0 || Card.GetValue(bottom) != Card.KING) {
+                        continue;
+                    }
+                    idx = hidden;
+                } else {
+                    // The visible run goes down one at a time from bottom, so
+                    // there's only one place the right card can be.
+                    idx = hidden + Card.GetValue(bottom) - Card.GetValue(top) + 1;
+                    if (idx < hidden || idx >= count || Card.isRed(anchor.getCard(idx)) == Card.isRed(top)) {
+                        continue;
+                    }
+                }
+                Move move = new Move(from, to, count - idx, false, idx > 0 && idx == hidden);
+                if (idx == hidden) {
+                    if (hidden > 0) {
+                        insertByHidden(moves, firstTableau, move);
+                    } else {
+                        moves.add(move);
+                    }
+                } else if (findSink(anchor.getCard(idx - 1), FOUNDATION) != -1) {
+                    moves.add(move);
+                }
+            }
+        }
+
+        // Waste to tableau.
+        if (wasteCard != Card.NONE) {
+            for (int to = TABLEAU; to < TABLEAU + TABLEAU_COUNT; to++) {
+                if (mAnchor[to].GetCount() == 0 && to != firstEmpty) {
+                    continue;
+                }
+                if (mAnchor[to].canDrop(wasteCard, 1)) {
+                    moves.add(new Move(WASTE, to, 1, false, false));
+                }
+            }
+        }
+
+        // Turn over the next cards, or the waste when the stock is out.
+        int stockCount = mAnchor[STOCK].GetCount();
+        if (stockCount > 0) {
+            int maxCount = mDealThree ? 3 : 1;
+            moves.add(new Move(STOCK, WASTE, stockCount < maxCount ? stockCount : maxCount, true, false));
+        } else if (mAnchor[WASTE].GetCount() > 0) {
+            int dealsLeft = mRules.GetRulesExtra();
+            if (dealsLeft != 0) {
+                moves.add(new Move(WASTE, STOCK, mAnchor[WASTE].GetCount(), true, false, dealsLeft > 0));
+            }
+        }
+    }
+
+    // Only for getBestMove, the search itself is depth first. Every card not
+    // home counts, and every card still face down counts again.
+    @Override
+    protected int score() {
+        readFoundations(FOUNDATION);
+        int score = 52 - mFoundation[0] - mFoundation[1] - mFoundation[2] - mFoundation[3];
+        if (score == 0) {
+            return 0;
+        }
+        for (int i = TABLEAU; i < TABLEAU + TABLEAU_COUNT; i++) {
+            score += mAnchor[i].GetHiddenCount();
+        }
+        return score;
+    }
+
+    // Keeps the moves that turn cards over sorted, most hidden cards first.
+    private void insertByHidden(final List<Move> moves, final int first, final Move move) {
+        int hidden = mAnchor[move.GetFrom()].GetHiddenCount();
+        int i = first;
+        while (i < moves.size() && moves.get(i).GetUnhide() && mAnchor[moves.get(i).GetFrom()].GetHiddenCount() >= hidden) {
+            i++;
+        }
+        moves.add(i, move);
+    }
+}
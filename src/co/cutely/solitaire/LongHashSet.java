@@ -0,0 +1,107 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.Arrays;
+
+// A set of longs using open addressing, so a search can remember millions of
+// position hashes without boxing every one into a Long. The keys are expected
+// to be well mixed already (they're Zobrist hashes), so the low bits are used
+// as they are.
+class LongHashSet {
+
+    private long[] mTable;
+    private int mMask;
+    private int mSize;
+    private boolean mHasZero;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(final int capacity) {
+        int size = 16;
+        while (size < capacity * 2) {
+            size <<= 1;
+        }
+        mTable = new long[size];
+        mMask = size - 1;
+    }
+
+    // Returns false if key was already in the set.
+    public boolean add(final long key) {
+        // 0 marks an empty slot, so it's kept on the side.
+        if (key == 0) {
+            if (mHasZero) {
+                return false;
+            }
+            mHasZero = true;
+            mSize++;
+            return true;
+        }
+        int idx = (int) key & mMask;
+        while (mTable[idx] != 0) {
+            if (mTable[idx] == key) {
+                return false;
+            }
+            idx = (idx + 1) & mMask;
+        }
+        mTable[idx] = key;
+        mSize++;
+        if (mSize * 2 > mTable.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(final long key) {
+        if (key == 0) {
+            return mHasZero;
+        }
+        int idx = (int) key & mMask;
+        while (mTable[idx] != 0) {
+            if (mTable[idx] == key) {
+                return true;
+            }
+            idx = (idx + 1) & mMask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        Arrays.fill(mTable, 0);
+        mSize = 0;
+        mHasZero = false;
+    }
+
+    private void grow() {
+        long[] old = mTable;
+        mTable = new long[old.length * 2];
+        mMask = mTable.length - 1;
+        for (int i = 0; i < old.length; i++) {
+            long key = old[i];
+            if (key != 0) {
+                int idx = (int) key & mMask;
+                while (mTable[idx] != 0) {
+                    idx = (idx + 1) & mMask;
+                }
+                mTable[idx] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+// The Freecell deals from Microsoft's Freecell, numbered the same way, so
+// deal 1 here is deal 1 there (and 11982 is the one nobody can win). It's
+// their C library rand(), a plain LCG, driving their shuffle, and works for
+// any deal number from 1 up to Integer.MAX_VALUE.
+final class MicrosoftDeal {
+
+    public static final int FIRST = 1;
+    // The deals in the original game, the usual ones to pick from.
+    public static final int CLASSIC_COUNT = 32000;
+
+    // Their suit order is clubs, diamonds, hearts, spades.
+    private static final int[] SUIT = { Card.CLUBS, Card.DIAMONDS, Card.HEARTS, Card.SPADES };
+
+    private MicrosoftDeal() {
+    }
+
+    // Fills cards (52 of them) with the deal in the order it's dealt, card i
+    // going on column i % 8. Doesn't allocate anything, so a caller can go
+    // through millions of deals with one array.
+    public static void deal(final int number, final byte[] cards) {
+        // Their deck starts with the kings of spades at the front and is
+        // numbered value * 4 + suit.
+        for (int i = 0; i < 52; i++) {
+            cards[i] = (byte) (51 - i);
+        }
+        int seed = number;
+        for (int i = 0; i < 51; i++) {
+            seed = (seed * 214013 + 2531011) & 0x7fffffff;
+            int j = 51 - (seed >> 16) % (52 - i);
+            byte swap = cards[i];
+            cards[i] = cards[j];
+            cards[j] = swap;
+        }
+        for (int i = 0; i < 52; i++) {
+            cards[i] = (byte) Card.make(cards[i] / 4 + 1, SUIT[cards[i] % 4]);
+        }
+    }
+
+    // Any seed to one of the classic deal numbers, leaving a deal number
+    // that's already valid alone.
+    public static int fromSeed(final long seed) {
+        if (seed >= FIRST && seed <= Integer.MAX_VALUE) {
+            return (int) seed;
+        }
+        return FIRST + (int) ((seed >>> 1) % CLASSIC_COUNT);
+    }
+}
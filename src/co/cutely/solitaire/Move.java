@@ -27,6 +27,14 @@ public class Move {
   private static final int FLAGS_UNHIDE = 0x0002;
   private static final int FLAGS_ADD_DEAL_COUNT = 0x0004;
 
+  // A move packed into an int, for move lists that shouldn't allocate (see
+  // Rules.generateMoves): from, toBegin and toEnd get 6 bits each, count and
+  // flags 7 bits each, so anchors up to 63 and moves of up to 127 cards.
+  private static final int PACK_FROM = 26;
+  private static final int PACK_TO_BEGIN = 20;
+  private static final int PACK_TO_END = 14;
+  private static final int PACK_COUNT = 7;
+
   public Move() {
     mFrom = -1;
     mToBegin = -1;
@@ -98,4 +106,37 @@ public class Move {
   public boolean GetInvert() { return (mFlags & FLAGS_INVERT) != 0; }
   public boolean GetUnhide() { return (mFlags & FLAGS_UNHIDE) != 0; }
   public boolean GetAddDealCount() { return (mFlags & FLAGS_ADD_DEAL_COUNT) != 0; } 
+
+  public int pack() {
+    return pack(mFrom, mToBegin, mToEnd, mCount, mFlags);
+  }
+
+  public static int pack(int from, int toBegin, int toEnd, int count, int flags) {
+    return from << PACK_FROM | toBegin << PACK_TO_BEGIN | toEnd << PACK_TO_END
+        | count << PACK_COUNT | flags;
+  }
+
+  public static int pack(int from, int to, int count, boolean invert, boolean unhide) {
+    return pack(from, to, count, invert, unhide, false);
+  }
+
+  public static int pack(int from, int to, int count, boolean invert, boolean unhide,
+                         boolean addDealCount) {
+    return pack(from, to, to, count, (invert ? FLAGS_INVERT : 0) | (unhide ? FLAGS_UNHIDE : 0)
+                | (addDealCount ? FLAGS_ADD_DEAL_COUNT : 0));
+  }
+
+  public static Move unpack(int packed) {
+    return new Move(getFrom(packed), getToBegin(packed), getToEnd(packed), getCount(packed),
+                    getFlags(packed));
+  }
+
+  public static int getFrom(int packed) { return packed >>> PACK_FROM; }
+  public static int getToBegin(int packed) { return (packed >>> PACK_TO_BEGIN) & 0x3f; }
+  public static int getToEnd(int packed) { return (packed >>> PACK_TO_END) & 0x3f; }
+  public static int getCount(int packed) { return (packed >>> PACK_COUNT) & 0x7f; }
+  public static int getFlags(int packed) { return packed & 0x7f; }
+  public static boolean getInvert(int packed) { return (packed & FLAGS_INVERT) != 0; }
+  public static boolean getUnhide(int packed) { return (packed & FLAGS_UNHIDE) != 0; }
+  public static boolean getAddDealCount(int packed) { return (packed & FLAGS_ADD_DEAL_COUNT) != 0; }
 }
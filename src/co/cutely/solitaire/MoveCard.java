@@ -23,13 +23,17 @@ class MoveCard {
     private static final int MAX_CARDS = 13;
 
     private boolean mValid;
-    private Card[] mCard;
+    private int[] mCard;
+    private float[] mX;
+    private float[] mY;
     private int mCardCount;
     private CardAnchor mCardAnchor;
     private PointF mOriginalPoint;
 
     public MoveCard() {
-        mCard = new Card[MAX_CARDS];
+        mCard = new int[MAX_CARDS];
+        mX = new float[MAX_CARDS];
+        mY = new float[MAX_CARDS];
         mOriginalPoint = new PointF(1, 1);
         Clear();
     }
@@ -46,17 +50,25 @@ class MoveCard {
         return mCardCount;
     }
 
-    public Card GetTopCard() {
+    public int GetTopCard() {
         return mCard[0];
     }
 
+    public float getCardX(final int idx) {
+        return mX[idx];
+    }
+
+    public float getCardY(final int idx) {
+        return mY[idx];
+    }
+
     public void SetAnchor(final CardAnchor anchor) {
         mCardAnchor = anchor;
     }
 
     public void Draw(final DrawMaster drawMaster, final Canvas canvas) {
         for (int i = 0; i < mCardCount; i++) {
-            drawMaster.DrawCard(canvas, mCard[i]);
+            drawMaster.DrawCard(canvas, mCard[i], mX[i], mY[i]);
         }
     }
 
@@ -64,9 +76,6 @@ class MoveCard {
         mValid = false;
         mCardCount = 0;
         mCardAnchor = null;
-        for (int i = 0; i < MAX_CARDS; i++) {
-            mCard[i] = null;
-        }
     }
 
     public void Release() {
@@ -79,32 +88,36 @@ class MoveCard {
         }
     }
 
-    public void AddCard(final Card card) {
+    public void AddCard(final int card, final float x, final float y) {
         if (mCardCount == 0) {
-            mOriginalPoint.set(card.GetX(), card.GetY());
+            mOriginalPoint.set(x, y);
         }
-        mCard[mCardCount++] = card;
+        mCard[mCardCount] = card;
+        mX[mCardCount] = x;
+        mY[mCardCount] = y;
+        mCardCount++;
         mValid = true;
     }
 
     public void MovePosition(final float dx, final float dy) {
         for (int i = 0; i < mCardCount; i++) {
-            mCard[i].MovePosition(dx, dy);
+            mX[i] -= dx;
+            mY[i] -= dy;
         }
     }
 
-    public Card[] DumpCards() {
+    public int[] DumpCards() {
         return DumpCards(true);
     }
 
-    public Card[] DumpCards(final boolean unhide) {
-        Card[] ret = null;
+    public int[] DumpCards(final boolean unhide) {
+        int[] ret = null;
         if (mValid) {
             mValid = false;
             if (unhide) {
                 mCardAnchor.UnhideTopCard();
             }
-            ret = new Card[mCardCount];
+            ret = new int[mCardCount];
             for (int i = 0; i < mCardCount; i++) {
                 ret[i] = mCard[i];
             }
@@ -116,29 +129,27 @@ class MoveCard {
     public void InitFromSelectCard(final SelectCard selectCard, final float x, final float y) {
         int count = selectCard.GetCount();
         mCardAnchor = selectCard.GetAnchor();
-        Card[] cards = selectCard.DumpCards();
+        int[] cards = selectCard.DumpCards();
 
         for (int i = 0; i < count; i++) {
-            cards[i].SetPosition(x - Card.WIDTH / 2, y - Card.HEIGHT / 2 + 15 * i);
-            AddCard(cards[i]);
+            AddCard(cards[i], x - Card.WIDTH / 2, y - Card.HEIGHT / 2 + 15 * i);
         }
         mValid = true;
     }
 
     public void InitFromAnchor(final CardAnchor cardAnchor, final float x, final float y) {
         mCardAnchor = cardAnchor;
-        Card[] cards = cardAnchor.GetCardStack();
+        int[] cards = cardAnchor.GetCardStack();
 
         for (int i = 0; i < cards.length; i++) {
-            cards[i].SetPosition(x, y + 15 * i);
-            AddCard(cards[i]);
+            AddCard(cards[i], x, y + 15 * i);
         }
         mValid = true;
     }
 
     public boolean HasMoved() {
-        float x = mCard[0].GetX();
-        float y = mCard[0].GetY();
+        float x = mX[0];
+        float y = mY[0];
 
         if (x >= mOriginalPoint.x - 2 && x <= mOriginalPoint.x + 2 && y >= mOriginalPoint.y - 2 && y <= mOriginalPoint.y + 2) {
             return false;
@@ -147,10 +158,10 @@ class MoveCard {
     }
 
     public float getX() {
-        return mCard[0].getCenterX();
+        return mX[0] + (Card.WIDTH / 2);
     }
 
     public float getY() {
-        return mCard[0].getMoveY();
+        return mY[0] + (Card.HEIGHT * 2f / 3f);
     }
 }
@@ -0,0 +1,98 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+// The move history, used as a stack. Every move is kept packed into an int
+// (see Move.pack) in an array that grows as it needs to, so pushing and
+// popping never allocate and a long game is one int per move rather than an
+// object each. Not synchronized, the history only ever belongs to one thread.
+class MoveLog {
+
+    private int[] mMoves;
+    private int mSize;
+
+    public MoveLog() {
+        this(64);
+    }
+
+    public MoveLog(final int capacity) {
+        mMoves = new int[capacity < 1 ? 1 : capacity];
+    }
+
+    public void push(final int packed) {
+        if (mSize == mMoves.length) {
+            int[] moves = new int[mSize * 2];
+            System.arraycopy(mMoves, 0, moves, 0, mSize);
+            mMoves = moves;
+        }
+        mMoves[mSize++] = packed;
+    }
+
+    public void push(final Move move) {
+        push(move.pack());
+    }
+
+    public int pop() {
+        if (mSize == 0) {
+            throw new IllegalStateException("pop from an empty history");
+        }
+        return mMoves[--mSize];
+    }
+
+    // Same as pop(), for a move that was only ever tried and won't be
+    // wanted again (see UndoTree).
+    public int discard() {
+        return pop();
+    }
+
+    public int peek() {
+        if (mSize == 0) {
+            throw new IllegalStateException("peek at an empty history");
+        }
+        return mMoves[mSize - 1];
+    }
+
+    // The index'th move played, from 0 at the start of the game.
+    public int get(final int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("move " + index + " of " + mSize);
+        }
+        return mMoves[index];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    public void addAll(final MoveLog log) {
+        for (int i = 0; i < log.mSize; i++) {
+            push(log.mMoves[i]);
+        }
+    }
+
+    // A copy of the moves, oldest first.
+    public int[] toArray() {
+        int[] moves = new int[mSize];
+        System.arraycopy(mMoves, 0, moves, 0, mSize);
+        return moves;
+    }
+}
@@ -36,6 +36,10 @@ public class Options {
         final boolean displayTime = solitaire.GetSettings().getBoolean("DisplayTime", true);
         ((CheckBox) solitaire.findViewById(R.id.display_time)).setChecked(displayTime);
 
+        // Deal stuff
+        final boolean winnableDeals = solitaire.GetSettings().getBoolean("WinnableDeals", false);
+        ((CheckBox) solitaire.findViewById(R.id.winnable_deals)).setChecked(winnableDeals);
+
         // Solitaire stuff
         final boolean dealThree = solitaire.GetSettings().getBoolean("SolitaireDealThree", false);
         final boolean styleNormal = solitaire.GetSettings().getBoolean("SolitaireStyleNormal", true);
@@ -50,11 +54,21 @@ public class Options {
         ((RadioButton) solitaire.findViewById(R.id.suits_2)).setChecked(suits == 2);
         ((RadioButton) solitaire.findViewById(R.id.suits_1)).setChecked(suits == 1);
 
+        // Freecell stuff
+        final boolean msDeals = solitaire.GetSettings().getBoolean("FreecellMSDeals", false);
+        ((CheckBox) solitaire.findViewById(R.id.ms_deals)).setChecked(msDeals);
+
+        // Forty Thieves stuff
+        final boolean winnable = solitaire.GetSettings().getBoolean("FortyThievesWinnable", false);
+        ((CheckBox) solitaire.findViewById(R.id.winnable_only)).setChecked(winnable);
+
         // Automove
         final int autoMove = solitaire.GetSettings().getInt("AutoMoveLevel", Rules.AUTO_MOVE_ALWAYS);
         ((RadioButton) solitaire.findViewById(R.id.auto_move_always)).setChecked(autoMove == Rules.AUTO_MOVE_ALWAYS);
         ((RadioButton) solitaire.findViewById(R.id.auto_move_fling_only)).setChecked(autoMove == Rules.AUTO_MOVE_FLING_ONLY);
         ((RadioButton) solitaire.findViewById(R.id.auto_move_never)).setChecked(autoMove == Rules.AUTO_MOVE_NEVER);
+        final boolean animateAutoMove = solitaire.GetSettings().getBoolean("AnimateAutoMove", true);
+        ((CheckBox) solitaire.findViewById(R.id.animate_auto_move)).setChecked(animateAutoMove);
 
         final Button accept = (Button) solitaire.findViewById(R.id.button_accept);
         accept.setOnClickListener(new View.OnClickListener() {
@@ -68,6 +82,11 @@ public class Options {
                     commit = true;
                 }
 
+                if (winnableDeals != ((CheckBox) solitaire.findViewById(R.id.winnable_deals)).isChecked()) {
+                    editor.putBoolean("WinnableDeals", !winnableDeals);
+                    commit = true;
+                }
+
                 if (dealThree != ((RadioButton) solitaire.findViewById(R.id.deal_3)).isChecked()) {
                     editor.putBoolean("SolitaireDealThree", !dealThree);
                     commit = true;
@@ -99,6 +118,19 @@ public class Options {
                     }
                 }
 
+                if (msDeals != ((CheckBox) solitaire.findViewById(R.id.ms_deals)).isChecked()) {
+                    editor.putBoolean("FreecellMSDeals", !msDeals);
+                    commit = true;
+                    if (type == Rules.FREECELL) {
+                        newGame = true;
+                    }
+                }
+
+                if (winnable != ((CheckBox) solitaire.findViewById(R.id.winnable_only)).isChecked()) {
+                    editor.putBoolean("FortyThievesWinnable", !winnable);
+                    commit = true;
+                }
+
                 int newAutoMove = Rules.AUTO_MOVE_NEVER;
                 if (((RadioButton) solitaire.findViewById(R.id.auto_move_always)).isChecked()) {
                     newAutoMove = Rules.AUTO_MOVE_ALWAYS;
@@ -111,6 +143,11 @@ public class Options {
                     commit = true;
                 }
 
+                if (animateAutoMove != ((CheckBox) solitaire.findViewById(R.id.animate_auto_move)).isChecked()) {
+                    editor.putBoolean("AnimateAutoMove", !animateAutoMove);
+                    commit = true;
+                }
+
                 if (commit) {
                     editor.commit();
                     solitaire.RefreshOptions();
@@ -0,0 +1,251 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs the best first search of a Solver on several threads at once. Every
+// worker has a solver of its own (so its own board, history and move list)
+// and its own queue of positions. New positions go on the queue of the worker
+// that found them, and a worker that runs out takes the best position off
+// someone else's queue. All of them share one ConcurrentLongHashSet of seen
+// positions, so no position is searched twice whichever worker gets to it.
+//
+// The search is the same one Solver.bestFirst does, so any of the solvers
+// work here, Klondike included.
+class ParallelSolver {
+
+    private static final int SEEN_ENTRY_SIZE = 16;
+
+    private Solver[] mSolvers;
+    private Worker[] mWorker;
+    private ConcurrentLongHashSet mSeen;
+    private List<Move> mSolution;
+    private long mMemoryLimit;
+
+    // Shared between the workers for the length of a solve()
+    private AtomicLong mNodeCount;
+    private AtomicLong mMemory;
+    private AtomicInteger mIdle;
+    private volatile boolean mDone;
+    private volatile boolean mGaveUp;
+    private volatile Solver.Node mWon;
+    private long mMaxNodes;
+    private long mDeadline;
+
+    private class Worker extends Thread {
+        private Solver mSolver;
+        private PriorityQueue<Solver.Node> mOpen;
+        private List<Solver.Node> mChildren;
+        private int mNumber;
+        private long mNodes;
+        private long mMillis;
+
+        public Worker(final Solver solver, final int number) {
+            mSolver = solver;
+            mNumber = number;
+            mOpen = new PriorityQueue<Solver.Node>(1024, Solver.BEST_FIRST);
+            mChildren = new ArrayList<Solver.Node>();
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            while (!mDone) {
+                Solver.Node node = next();
+                if (node == null) {
+                    break;
+                }
+                if (node.mScore == 0) {
+                    mWon = node;
+                    mDone = true;
+                    break;
+                }
+                mNodes++;
+                if (mNodeCount.incrementAndGet() > mMaxNodes || ((mNodes & 0xff) == 0 && System.currentTimeMillis() > mDeadline)) {
+                    giveUp();
+                    break;
+                }
+                mChildren.clear();
+                long memory = mMemory.addAndGet(mSolver.expand(node, mChildren));
+                synchronized (this) {
+                    mOpen.addAll(mChildren);
+                }
+                if (memory > mMemoryLimit || mSeen.isFull()) {
+                    giveUp();
+                }
+            }
+            mMillis = System.currentTimeMillis() - start;
+        }
+
+        // Our own best position, or failing that someone else's. Waits while
+        // the others might still turn up more, returns null once every worker
+        // is out of work (or the search is over).
+        private Solver.Node next() {
+            Solver.Node node = poll();
+            if (node == null) {
+                node = steal();
+            }
+            if (node != null) {
+                return node;
+            }
+            // A worker only counts as idle while it holds nothing and isn't
+            // part way through stealing, so once they all are, nothing more
+            // can turn up.
+            if (mIdle.incrementAndGet() == mWorker.length) {
+                mDone = true;
+            }
+            while (!mDone) {
+                Thread.yield();
+                mIdle.decrementAndGet();
+                node = steal();
+                if (node != null) {
+                    return node;
+                }
+                if (mIdle.incrementAndGet() == mWorker.length) {
+                    mDone = true;
+                }
+            }
+            return null;
+        }
+
+        private synchronized Solver.Node poll() {
+            return mOpen.poll();
+        }
+
+        private Solver.Node steal() {
+            for (int i = 1; i < mWorker.length; i++) {
+                Solver.Node node = mWorker[(mNumber + i) % mWorker.length].poll();
+                if (node != null) {
+                    return node;
+                }
+            }
+            return null;
+        }
+    }
+
+    // One worker per processor.
+    public ParallelSolver(final GameState state, final GameOptions options) {
+        this(state, options, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelSolver(final GameState state, final GameOptions options, final int threads) {
+        mSolvers = new Solver[threads < 1 ? 1 : threads];
+        for (int i = 0; i < mSolvers.length; i++) {
+            mSolvers[i] = Solver.create(state, options);
+        }
+        mMemoryLimit = Solver.DEFAULT_MEMORY_LIMIT * mSolvers.length;
+    }
+
+    // Covers the queued positions and the table of seen ones together. The
+    // default is Solver.DEFAULT_MEMORY_LIMIT for every worker, they'd run
+    // out in no time sharing one solver's worth.
+    public void setMemoryLimit(final long bytes) {
+        mMemoryLimit = bytes;
+    }
+
+    public int getWorkerCount() {
+        return mSolvers.length;
+    }
+
+    // Same as Solver.solve, with the budgets shared by all the workers.
+    public int solve(final long maxNodes, final long maxMillis) {
+        mSolution = null;
+        mNodeCount = new AtomicLong();
+        mIdle = new AtomicInteger();
+        mDone = false;
+        mGaveUp = false;
+        mWon = null;
+        mMaxNodes = maxNodes;
+        mDeadline = System.currentTimeMillis() + maxMillis;
+
+        // A quarter of the memory goes to the table, the rest to positions.
+        mSeen = new ConcurrentLongHashSet((int) Math.min(mMemoryLimit / 4 / SEEN_ENTRY_SIZE, 1 << 26));
+        mMemory = new AtomicLong(mMemoryLimit / 4);
+        // Threads only run once, so every solve gets new workers.
+        mWorker = new Worker[mSolvers.length];
+        for (int i = 0; i < mSolvers.length; i++) {
+            mSolvers[i].setSharedSeen(mSeen);
+            mSolvers[i].clearPruned();
+            mWorker[i] = new Worker(mSolvers[i], i);
+        }
+        byte[] start = mSolvers[0].mRules.packBoard();
+        mWorker[0].mOpen.add(mSolvers[0].startNode());
+
+        for (int i = 0; i < mWorker.length; i++) {
+            mWorker[i].start();
+        }
+        for (int i = 0; i < mWorker.length; i++) {
+            boolean joined = false;
+            while (!joined) {
+                try {
+                    mWorker[i].join();
+                    joined = true;
+                } catch (InterruptedException e) {
+                    giveUp();
+                }
+            }
+        }
+
+        // The workers leave their boards wherever they got to.
+        for (int i = 0; i < mSolvers.length; i++) {
+            mSolvers[i].mRules.unpackBoard(start);
+        }
+        if (mWon != null) {
+            mSolution = Solver.lineTo(mWon);
+            return Solver.SOLVED;
+        }
+        for (int i = 0; i < mSolvers.length; i++) {
+            if (mSolvers[i].isPruned()) {
+                return Solver.GAVE_UP;
+            }
+        }
+        return mGaveUp ? Solver.GAVE_UP : Solver.NO_SOLUTION;
+    }
+
+    public List<Move> getSolution() {
+        return mSolution;
+    }
+
+    public long getNodeCount() {
+        return mNodeCount.get();
+    }
+
+    // How many positions each worker expanded in the last solve(), and how
+    // fast, 0 before the first solve(). If adding workers stops adding speed,
+    // it shows up here first.
+    public long getWorkerNodeCount(final int worker) {
+        if (mWorker == null) {
+            return 0;
+        }
+        return mWorker[worker].mNodes;
+    }
+
+    public long getWorkerNodesPerSecond(final int worker) {
+        if (mWorker == null) {
+            return 0;
+        }
+        Worker w = mWorker[worker];
+        return w.mMillis == 0 ? 0 : w.mNodes * 1000 / w.mMillis;
+    }
+
+    private void giveUp() {
+        mGaveUp = true;
+        mDone = true;
+    }
+}
@@ -15,29 +15,41 @@
  */
 package co.cutely.solitaire;
 
-import java.util.Stack;
+// Plays back a won game. The history is already the whole game, so replay
+// seeks it back to the start and then redoes it: each move goes straight onto
+// the anchors with Rules.applyMove, and only then are its cards lifted off
+// again to be animated there. So the board and the history always agree, and
+// seeking or stepping is just UndoTree.seek with one redraw after it, from
+// wherever the playback (or animation) has got to.
+public class Replay implements Runnable {
 
-import android.util.Log;
+    private static final float MIN_SPEED = 0.5f;
+    private static final float MAX_SPEED = 16;
 
-public class Replay implements Runnable {
-    private Stack<Move> mMoveStack;
+    private UndoTree mHistory;
+    private Rules mRules;
     private SolitaireView mView;
     private AnimateCard mAnimateCard;
     private CardAnchor[] mCardAnchor;
     private boolean mIsPlaying;
+    // Moves in the game being replayed
+    private int mLength;
+    private float mSpeed;
 
-    private Card[] mSinkCard;
-    private int mSinkCount;
-    private CardAnchor mSinkAnchor;
-    private CardAnchor mSinkFrom;
-    private boolean mSinkUnhide;
+    private int[] mSinkCard;
+    private float[] mSinkX;
+    private float[] mSinkY;
+    private CardAnchor[] mSinkTo;
 
     public Replay(final SolitaireView view, final AnimateCard animateCard) {
         mView = view;
         mAnimateCard = animateCard;
         mIsPlaying = false;
-        mMoveStack = new Stack<Move>();
-        mSinkCard = new Card[104];
+        mSpeed = 1;
+        mSinkCard = new int[104];
+        mSinkX = new float[104];
+        mSinkY = new float[104];
+        mSinkTo = new CardAnchor[104];
     }
 
     public boolean IsPlaying() {
@@ -46,62 +58,119 @@ public class Replay implements Runnable {
 
     public void StopPlaying() {
         mIsPlaying = false;
+        mAnimateCard.SetSpeed(1);
     }
 
-    public void StartReplay(final Stack<Move> history, final CardAnchor[] anchor) {
-        mCardAnchor = anchor;
-        mMoveStack.clear();
-        while (!history.empty()) {
-            Move move = history.peek();
-            if (move.GetToBegin() != move.GetToEnd()) {
-                for (int i = move.GetToEnd(); i >= move.GetToBegin(); i--) {
-                    mMoveStack.push(new Move(move.GetFrom(), i, 1, false, false));
-                }
-            } else {
-                mMoveStack.push(move);
-            }
-            mView.Undo();
-        }
+    public void StartReplay(final UndoTree history, final Rules rules) {
+        mHistory = history;
+        mRules = rules;
+        mCardAnchor = rules.GetAnchorArray();
+        mLength = history.size();
+        history.seek(rules, 0);
         mView.DrawBoard();
+        Play();
+    }
+
+    // Carries on from wherever it's got to, from the start if that's the end.
+    public void Play() {
+        if (mHistory == null) {
+            return;
+        }
+        if (mHistory.size() >= mLength) {
+            mHistory.seek(mRules, 0);
+            mView.DrawBoard();
+        }
         mIsPlaying = true;
+        mAnimateCard.SetSpeed(mSpeed);
         PlayNext();
     }
 
+    // Stops where it is, with any card in flight landed.
+    public void Pause() {
+        if (mIsPlaying) {
+            mAnimateCard.Cancel();
+            StopPlaying();
+            mView.StopAnimating();
+        }
+    }
+
+    public int GetPosition() {
+        return mHistory == null ? 0 : mHistory.size();
+    }
+
+    public int GetLength() {
+        return mLength;
+    }
+
+    // Jumps to the position after the first moves moves, with no animation.
+    public void Seek(final int moves) {
+        if (mHistory == null) {
+            return;
+        }
+        Pause();
+        mHistory.seek(mRules, Math.max(0, Math.min(moves, mLength)));
+        // Paused, nothing else is going to repaint
+        mView.Refresh();
+    }
+
+    public void Step(final int moves) {
+        Seek(GetPosition() + moves);
+    }
+
+    public void Faster() {
+        SetSpeed(mSpeed * 2);
+    }
+
+    public void Slower() {
+        SetSpeed(mSpeed / 2);
+    }
+
+    private void SetSpeed(final float speed) {
+        mSpeed = Math.max(MIN_SPEED, Math.min(speed, MAX_SPEED));
+        if (mIsPlaying) {
+            mAnimateCard.SetSpeed(mSpeed);
+        }
+    }
+
     public void PlayNext() {
-        if (!mIsPlaying || mMoveStack.empty()) {
-            mIsPlaying = false;
+        if (!mIsPlaying || mHistory.size() >= mLength || !mHistory.canRedo()) {
+            StopPlaying();
             mView.StopAnimating();
             return;
         }
-        Move move = mMoveStack.pop();
-
-        if (move.GetToBegin() == move.GetToEnd()) {
-            mSinkCount = move.GetCount();
-            mSinkAnchor = mCardAnchor[move.GetToBegin()];
-            mSinkUnhide = move.GetUnhide();
-            mSinkFrom = mCardAnchor[move.GetFrom()];
-
-            if (move.GetInvert()) {
-                for (int i = 0; i < mSinkCount; i++) {
-                    mSinkCard[i] = mSinkFrom.PopCard();
-                }
-            } else {
-                for (int i = mSinkCount - 1; i >= 0; i--) {
-                    mSinkCard[i] = mSinkFrom.PopCard();
-                }
-            }
-            mAnimateCard.MoveCards(mSinkCard, mSinkAnchor, mSinkCount, this);
+        int move = mHistory.getRedo();
+        CardAnchor from = mCardAnchor[Move.getFrom(move)];
+        int toBegin = Move.getToBegin(move);
+        int toEnd = Move.getToEnd(move);
+        int count = Move.getCount(move) * (toEnd - toBegin + 1);
+
+        // Where each card starts, read before the move. Cards are numbered in
+        // the order they land, so a move that deals them out one at a time
+        // (invert, or over several anchors) takes them from the top down.
+        boolean topDown = Move.getInvert(move) || toBegin != toEnd;
+        int top = from.GetCount() - 1;
+        for (int i = 0; i < count; i++) {
+            int idx = topDown ? top - i : top - count + 1 + i;
+            mSinkX[i] = from.getCardX(idx);
+            mSinkY[i] = from.getCardY(idx);
+        }
+
+        mRules.applyMove(move);
+
+        // Then take them back off, last to land first
+        for (int i = count - 1; i >= 0; i--) {
+            mSinkTo[i] = mCardAnchor[toBegin + i / Move.getCount(move)];
+            mSinkCard[i] = mSinkTo[i].PopCard();
+        }
+        if (toBegin == toEnd) {
+            mAnimateCard.MoveCards(mSinkCard, mSinkX, mSinkY, mSinkTo[0], count, this);
         } else {
-            Log.e("Replay.java", "Invalid move encountered, aborting.");
-            mIsPlaying = false;
+            mAnimateCard.MoveCards(mSinkCard, mSinkX, mSinkY, mSinkTo, count, this);
         }
     }
 
     public void run() {
         if (mIsPlaying) {
-            if (mSinkUnhide) {
-                mSinkFrom.UnhideTopCard();
-            }
             PlayNext();
         }
     }
@@ -15,9 +15,7 @@
  */
 package co.cutely.solitaire;
 
-import java.util.Stack;
-
-import android.os.Bundle;
+import java.util.Random;
 
 public abstract class Rules {
 
@@ -37,10 +35,17 @@ public abstract class Rules {
     public static final int AUTO_MOVE_FLING_ONLY = 1;
     public static final int AUTO_MOVE_NEVER = 0;
 
+    // Room for every move generateMoves can find in any of the games
+    public static final int MAX_MOVES = 1024;
+
+    // Only for picking seeds, the deal itself comes from Deck.
+    private static final Random RANDOM = new Random();
+
     private int mType;
-    protected SolitaireView mView;
-    protected Stack<Move> mMoveHistory;
-    protected AnimateCard mAnimateCard;
+    protected GameListener mListener;
+    protected GameOptions mOptions;
+    protected MoveLog mMoveHistory;
+    protected CardAnimator mAnimateCard;
     protected boolean mIgnoreEvents;
     protected EventPoster mEventPoster;
 
@@ -50,10 +55,34 @@ public abstract class Rules {
 
     protected Deck mDeck;
     protected int mCardCount;
+    // What the deal was made from, see Deck
+    protected long mSeed;
+
+    // Undo
+    private int[] mUndoStorage;
+
+    // Zobrist hash of the cards, see Zobrist
+    private long mHash;
+
+    // For isStuck: bit b of mMovesOnto[a] is set when a has a move onto b.
+    // Only the anchors in mChanged need looking at again.
+    private int[] mMovesOnto;
+    private int mChanged;
+    private int mEmpty;
+
+    // Made the first time a hint is asked for
+    private HintEngine mHintEngine;
 
     // Automove
     protected int mAutoMoveLevel;
     protected boolean mWasFling;
+    protected boolean mAnimateAutoMove;
+
+    // What sinkAll sent home: the card, where it was and where it went
+    private int[] mAutoCard;
+    private float[] mAutoX;
+    private float[] mAutoY;
+    private CardAnchor[] mAutoTo;
 
     public int GetType() {
         return mType;
@@ -71,15 +100,32 @@ public abstract class Rules {
         mType = type;
     }
 
-    public void SetView(final SolitaireView view) {
-        mView = view;
+    public long getSeed() {
+        return mSeed;
+    }
+
+    // A seed for a new deal nobody has asked for in particular.
+    public static long newSeed() {
+        return RANDOM.nextLong();
     }
 
-    public void SetMoveHistory(final Stack<Move> moveHistory) {
+    public void SetListener(final GameListener listener) {
+        mListener = listener;
+    }
+
+    public void SetOptions(final GameOptions options) {
+        mOptions = options;
+    }
+
+    public GameOptions GetOptions() {
+        return mOptions;
+    }
+
+    public void SetMoveHistory(final MoveLog moveHistory) {
         mMoveHistory = moveHistory;
     }
 
-    public void SetAnimateCard(final AnimateCard animateCard) {
+    public void SetAnimateCard(final CardAnimator animateCard) {
         mAnimateCard = animateCard;
     }
 
@@ -99,6 +145,10 @@ public abstract class Rules {
         return 0;
     }
 
+    // Only rules with something in GetRulesExtra need to care.
+    protected void setRulesExtra(final int extra) {
+    }
+
     public String GetGameTypeString() {
         return "";
     }
@@ -129,34 +179,72 @@ public abstract class Rules {
     public void AddDealCount() {
     }
 
+    public void removeDealCount() {
+    }
+
     public int CountFreeSpaces() {
         return 0;
     }
 
+    abstract public boolean isWon();
+
     protected void SignalWin() {
-        mView.DisplayWin();
+        if (mListener != null) {
+            mListener.DisplayWin();
+        }
+    }
+
+    // Posts the win if the game is won, for moves made with events ignored
+    // (redo and the like), which never get to EVENT_STACK_ADD.
+    public boolean checkWin() {
+        if (!isWon()) {
+            return false;
+        }
+        SignalWin();
+        return true;
+    }
+
+    protected void refresh() {
+        if (mListener != null) {
+            mListener.Refresh();
+        }
+    }
+
+    protected void stopAnimating() {
+        if (mListener != null) {
+            mListener.StopAnimating();
+        }
+    }
+
+    // Without an animator the card just lands where it's going.
+    protected void moveCard(final int card, final CardAnchor from, final CardAnchor to) {
+        if (mAnimateCard != null) {
+            mAnimateCard.MoveCard(card, from, to);
+        } else {
+            to.AddCard(card);
+        }
     }
 
-    abstract public void Init(Bundle map);
+    abstract public void Init(GameState state);
 
     public void EventAlert(final int event) {
         if (!mIgnoreEvents) {
             mEventPoster.PostEvent(event);
-            mView.Refresh();
+            refresh();
         }
     }
 
     public void EventAlert(final int event, final CardAnchor anchor) {
         if (!mIgnoreEvents) {
             mEventPoster.PostEvent(event, anchor);
-            mView.Refresh();
+            refresh();
         }
     }
 
-    public void EventAlert(final int event, final CardAnchor anchor, final Card card) {
+    public void EventAlert(final int event, final CardAnchor anchor, final int card) {
         if (!mIgnoreEvents) {
             mEventPoster.PostEvent(event, anchor, card);
-            mView.Refresh();
+            refresh();
         }
     }
 
@@ -166,14 +254,15 @@ public abstract class Rules {
 
     abstract public void EventProcess(int event, CardAnchor anchor);
 
-    abstract public void EventProcess(int event, CardAnchor anchor, Card card);
+    abstract public void EventProcess(int event, CardAnchor anchor, int card);
 
     abstract public void EventProcess(int event);
 
     abstract public void Resize(int width, int height);
 
-    public boolean Fling(final MoveCard moveCard) {
-        moveCard.Release();
+    // Called with a single card that was flung off anchor. Returns true if the
+    // rules took the card, otherwise the caller has to put it back.
+    public boolean Fling(final CardAnchor anchor, final int card) {
         return false;
     }
 
@@ -184,11 +273,428 @@ public abstract class Rules {
     }
 
     public void RefreshOptions() {
-        mAutoMoveLevel = mView.GetSettings().getInt("AutoMoveLevel", Rules.AUTO_MOVE_ALWAYS);
+        mAutoMoveLevel = mOptions.getInt("AutoMoveLevel", Rules.AUTO_MOVE_ALWAYS);
+        mAnimateAutoMove = mOptions.getBoolean("AnimateAutoMove", true);
         mWasFling = false;
     }
 
-    public static Rules CreateRules(final int type, final Bundle map, final SolitaireView view, final Stack<Move> moveHistory, final AnimateCard animate) {
+    // Takes back the last move in the history. Returns false if there wasn't one.
+    public boolean undo() {
+        return undo(false);
+    }
+
+    // forget is for a move that was only tried, so the history needn't keep
+    // it around for redo (see MoveLog.discard).
+    private boolean undo(final boolean forget) {
+        if (mMoveHistory.isEmpty()) {
+            return false;
+        }
+        boolean oldIgnore = mIgnoreEvents;
+        mIgnoreEvents = true;
+
+        if (mUndoStorage == null) {
+            mUndoStorage = new int[CardAnchor.MAX_CARDS];
+        }
+        int move = forget ? mMoveHistory.discard() : mMoveHistory.pop();
+        int count = 0;
+        int from = Move.getFrom(move);
+        int toBegin = Move.getToBegin(move);
+        int toEnd = Move.getToEnd(move);
+        int cards = Move.getCount(move);
+        if (toBegin != toEnd) {
+            for (int i = toBegin; i <= toEnd; i++) {
+                for (int j = 0; j < cards; j++) {
+                    mUndoStorage[count++] = mCardAnchor[i].PopCard();
+                }
+            }
+        } else {
+            for (int i = 0; i < cards; i++) {
+                mUndoStorage[count++] = mCardAnchor[toBegin].PopCard();
+            }
+        }
+        if (Move.getUnhide(move)) {
+            mCardAnchor[from].SetHiddenCount(mCardAnchor[from].GetHiddenCount() + 1);
+        }
+        if (Move.getInvert(move)) {
+            for (int i = 0; i < count; i++) {
+                mCardAnchor[from].AddCard(mUndoStorage[i]);
+            }
+        } else {
+            for (int i = count - 1; i >= 0; i--) {
+                mCardAnchor[from].AddCard(mUndoStorage[i]);
+            }
+        }
+        if (Move.getAddDealCount(move)) {
+            AddDealCount();
+        }
+
+        mIgnoreEvents = oldIgnore;
+        return true;
+    }
+
+    // Ends the game in one go when all that's left is sending cards home:
+    // if sinkAll gets every card home, those moves stand and the cards go home
+    // together. Otherwise it takes everything back and returns false. With
+    // one deck sending a card home never gets in the way of another, so if
+    // this doesn't finish the game no order of sinks would. With two it can
+    // (which copy of a card goes first matters), those games just carry on
+    // with autoMove.
+    protected boolean autoComplete(final int[] from, final int firstSink, final int sinkCount) {
+        int count = sinkAll(from, firstSink, sinkCount);
+        if (count == 0 || !isWon()) {
+            boolean oldIgnore = mIgnoreEvents;
+            mIgnoreEvents = true;
+            for (; count > 0; count--) {
+                undo(true);
+            }
+            mIgnoreEvents = oldIgnore;
+            return false;
+        }
+        playAll(count);
+        return true;
+    }
+
+    // The smart move: sends home everything that can go, all in one step
+    // rather than a card and a frame at a time. Returns false if nothing could.
+    protected boolean autoMove(final int[] from, final int firstSink, final int sinkCount) {
+        int count = sinkAll(from, firstSink, sinkCount);
+        if (count == 0) {
+            return false;
+        }
+        playAll(count);
+        return true;
+    }
+
+    // Works out a whole run of cards going home up front: takes the top card
+    // of the first anchor in from that can go on one of sinkCount sinks from
+    // firstSink, then starts again from the first anchor, until nothing more
+    // can go. That's the order the old one card per event smart move went in.
+    // The moves go on the history as they're made and the cards are left on
+    // the sinks without anything being posted. Returns how many went, and
+    // mAutoCard and friends say which.
+    private int sinkAll(final int[] from, final int firstSink, final int sinkCount) {
+        if (mAutoCard == null) {
+            mAutoCard = new int[CardAnchor.MAX_CARDS];
+            mAutoX = new float[CardAnchor.MAX_CARDS];
+            mAutoY = new float[CardAnchor.MAX_CARDS];
+            mAutoTo = new CardAnchor[CardAnchor.MAX_CARDS];
+        }
+        boolean oldIgnore = mIgnoreEvents;
+        mIgnoreEvents = true;
+
+        int count = 0;
+        int i = 0;
+        while (i < from.length) {
+            CardAnchor anchor = mCardAnchor[from[i]];
+            int sink = firstSink;
+            while (anchor.GetCount() > 0 && sink < firstSink + sinkCount && !mCardAnchor[sink].DropSingleCard(anchor.getTopCard())) {
+                sink++;
+            }
+            if (anchor.GetCount() == 0 || sink == firstSink + sinkCount) {
+                i++;
+                continue;
+            }
+            int card = anchor.PopCard();
+            mAutoCard[count] = card;
+            mAutoX[count] = anchor.getCardX(anchor.GetCount());
+            mAutoY[count] = anchor.getCardY(anchor.GetCount());
+            mAutoTo[count] = mCardAnchor[sink];
+            count++;
+            mMoveHistory.push(Move.pack(from[i], sink, 1, false, anchor.UnhideTopCard()));
+            mCardAnchor[sink].AddCard(card);
+            i = 0;
+        }
+
+        mIgnoreEvents = oldIgnore;
+        return count;
+    }
+
+    // Shows the last count cards sinkAll sent home, which are already there.
+    // With an animator (and the AnimateAutoMove option) they're taken off
+    // again and fly home together, and landing posts EVENT_STACK_ADD as it
+    // always has. Otherwise they just stay put and the event is posted now.
+    private void playAll(final int count) {
+        if (mAnimateCard != null && mAnimateAutoMove) {
+            boolean oldIgnore = mIgnoreEvents;
+            mIgnoreEvents = true;
+            // Off again, the animation puts them back.
+            for (int i = count - 1; i >= 0; i--) {
+                mAutoTo[i].PopCard();
+            }
+            mIgnoreEvents = oldIgnore;
+            mAnimateCard.MoveCards(mAutoCard, mAutoX, mAutoY, mAutoTo, count);
+        } else {
+            EventAlert(EVENT_STACK_ADD, mAutoTo[count - 1]);
+        }
+    }
+
+    // Called by the anchors whenever their cards change.
+    public void anchorChanged(final int number) {
+        mChanged |= 1 << number;
+    }
+
+    // True when the game isn't won but there's no move left that does
+    // anything and no deal that could turn up one. Only the anchors that
+    // changed since the last call are looked at again, so it's cheap enough
+    // to ask after every move. Moving cards back and forth between the same
+    // two places still counts as a move, so not every hopeless game is
+    // caught.
+    public boolean isStuck() {
+        if (isWon() || canDealMore()) {
+            return false;
+        }
+        updateMoves();
+        for (int i = 0; i < mMovesOnto.length; i++) {
+            if (mMovesOnto[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whether dealing can still turn up something new.
+    protected boolean canDealMore() {
+        return false;
+    }
+
+    private void updateMoves() {
+        int count = mCardAnchor.length;
+        if (mMovesOnto == null) {
+            mMovesOnto = new int[count];
+            mChanged = -1;
+        }
+        // What can move can depend on how many spaces there are (Freecell),
+        // so when that changes everything is looked at again.
+        int empty = 0;
+        for (int i = 0; i < count; i++) {
+            if (mCardAnchor[i].GetCount() == 0) {
+                empty |= 1 << i;
+            }
+        }
+        if (empty != mEmpty) {
+            mEmpty = empty;
+            mChanged = -1;
+        }
+        for (int changed = 0; changed < count; changed++) {
+            if ((mChanged & (1 << changed)) == 0) {
+                continue;
+            }
+            mMovesOnto[changed] = 0;
+            for (int i = 0; i < count; i++) {
+                if (hasMove(changed, i)) {
+                    mMovesOnto[changed] |= 1 << i;
+                }
+                if (hasMove(i, changed)) {
+                    mMovesOnto[i] |= 1 << changed;
+                } else {
+                    mMovesOnto[i] &= ~(1 << changed);
+                }
+            }
+        }
+        mChanged = 0;
+    }
+
+    // A move from one anchor onto another that changes something. Taking
+    // cards back off a foundation or moving a whole stack to an empty anchor
+    // of the same kind doesn't count.
+    private boolean hasMove(final int fromNumber, final int toNumber) {
+        if (fromNumber == toNumber) {
+            return false;
+        }
+        CardAnchor from = mCardAnchor[fromNumber];
+        CardAnchor to = mCardAnchor[toNumber];
+        if (from.GetType() == CardAnchor.SEQ_SINK) {
+            return false;
+        }
+        int movable = from.GetMovableCount();
+        for (int count = 1; count <= movable; count++) {
+            if (count == from.GetCount() && to.GetCount() == 0 && from.getClass() == to.getClass()) {
+                continue;
+            }
+            if (to.canDrop(from.getCard(from.GetCount() - count), count)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Whether card could be put anywhere right now.
+    protected boolean canPlay(final int card) {
+        for (int i = 0; i < mCardAnchor.length; i++) {
+            if (mCardAnchor[i].canDrop(card, 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Called by the anchors with the Zobrist key of whatever just changed.
+    public void toggleHash(final long key) {
+        mHash ^= key;
+    }
+
+    // A 64 bit hash of the position, kept up to date as cards move. The same
+    // position always hashes the same, whether it came from play, undo or a
+    // saved game.
+    public long getHash() {
+        return mHash ^ Zobrist.extra(GetRulesExtra());
+    }
+
+    // A compact copy of the table: the rules extra, then for each anchor its
+    // card count, hidden count and one byte per card. It's cheap enough to take
+    // at every step of a search, and two boards are the same position exactly
+    // when the arrays are equal.
+    public byte[] packBoard() {
+        byte[] board = new byte[1 + mCardAnchor.length * 2 + mCardCount];
+        int pos = 0;
+        board[pos++] = (byte) GetRulesExtra();
+        for (int i = 0; i < mCardAnchor.length; i++) {
+            int count = mCardAnchor[i].GetCount();
+            board[pos++] = (byte) count;
+            board[pos++] = (byte) mCardAnchor[i].GetHiddenCount();
+            System.arraycopy(mCardAnchor[i].GetCards(), 0, board, pos, count);
+            pos += count;
+        }
+        return board;
+    }
+
+    // Puts back a board from packBoard. No events are posted and the move
+    // history is left alone.
+    public void unpackBoard(final byte[] board) {
+        int pos = 0;
+        setRulesExtra(board[pos++]);
+        for (int i = 0; i < mCardAnchor.length; i++) {
+            int count = board[pos++];
+            int hidden = board[pos++];
+            mCardAnchor[i].setCards(board, pos, count, hidden);
+            pos += count;
+        }
+    }
+
+    // Plays a move forwards, the other half of undo(). Nothing is posted, so no
+    // automatic moves follow it, and it goes on the history like any other.
+    public void applyMove(final Move move) {
+        applyMove(move.pack());
+    }
+
+    // Same as applyMove(Move.unpack(packed)), without making the Move.
+    public void applyMove(final int packed) {
+        boolean oldIgnore = mIgnoreEvents;
+        mIgnoreEvents = true;
+
+        if (mUndoStorage == null) {
+            mUndoStorage = new int[CardAnchor.MAX_CARDS];
+        }
+        CardAnchor from = mCardAnchor[Move.getFrom(packed)];
+        int toBegin = Move.getToBegin(packed);
+        int toEnd = Move.getToEnd(packed);
+        int count = Move.getCount(packed);
+        if (toBegin != toEnd) {
+            for (int i = toBegin; i <= toEnd; i++) {
+                for (int j = 0; j < count; j++) {
+                    mCardAnchor[i].AddCard(from.PopCard());
+                }
+            }
+        } else if (Move.getInvert(packed)) {
+            for (int i = 0; i < count; i++) {
+                mCardAnchor[toBegin].AddCard(from.PopCard());
+            }
+        } else {
+            for (int i = count - 1; i >= 0; i--) {
+                mUndoStorage[i] = from.PopCard();
+            }
+            for (int i = 0; i < count; i++) {
+                mCardAnchor[toBegin].AddCard(mUndoStorage[i]);
+            }
+        }
+        if (Move.getUnhide(packed)) {
+            from.SetHiddenCount(from.GetHiddenCount() - 1);
+        }
+        if (Move.getAddDealCount(packed)) {
+            removeDealCount();
+        }
+        mMoveHistory.push(packed);
+
+        mIgnoreEvents = oldIgnore;
+    }
+
+    // Writes every move the player could make now into moves, packed (see
+    // Move.pack) exactly as it would go on the history, and returns how many
+    // there are. Dealing is in there too, as the move it makes. Allocates
+    // nothing, so it can be called at every step of a search. If moves fills
+    // up the rest are left out, MAX_MOVES is always enough.
+    public int generateMoves(final int[] moves) {
+        int count = 0;
+        for (int from = 0; from < mCardAnchor.length; from++) {
+            if (!canMoveFrom(from)) {
+                continue;
+            }
+            CardAnchor anchor = mCardAnchor[from];
+            int cards = anchor.GetCount();
+            int movable = anchor.GetMovableCount();
+            for (int n = 1; n <= movable; n++) {
+                int card = anchor.getCard(cards - n);
+                // Picking up the last face up card turns over the one below.
+                boolean unhide = n == anchor.GetVisibleCount() && anchor.GetHiddenCount() > 0;
+                for (int to = 0; to < mCardAnchor.length; to++) {
+                    if (to != from && mCardAnchor[to].canDrop(card, n)) {
+                        if (count == moves.length) {
+                            return count;
+                        }
+                        moves[count++] = Move.pack(from, to, n, false, unhide);
+                    }
+                }
+            }
+        }
+        if (count < moves.length) {
+            count = generateDeal(moves, count);
+        }
+        return count;
+    }
+
+    // Adds the move dealing makes at moves[count], if there is one, and
+    // returns the new count.
+    protected int generateDeal(final int[] moves, final int count) {
+        return count;
+    }
+
+    // Whether the player can pick cards up off anchor at all.
+    protected boolean canMoveFrom(final int anchor) {
+        return true;
+    }
+
+    // The best move that can be found in about maxMillis, or null if there's
+    // nothing to do. It's an ordinary Move, one from the DealFrom anchor
+    // means deal. The search goes on in the background afterwards, so asking
+    // again about the same position may come back with a better move.
+    public Move getHint(final long maxMillis) {
+        if (mHintEngine == null) {
+            mHintEngine = new HintEngine(mOptions);
+        }
+        return mHintEngine.getHint(this, maxMillis);
+    }
+
+    // Stops any hint search, call it before dropping the rules.
+    public void stopHint() {
+        if (mHintEngine != null) {
+            mHintEngine.stop();
+        }
+    }
+
+    // listener and animate can be null, in which case the game runs headless.
+    public static Rules CreateRules(final int type, final GameState state, final GameOptions options, final GameListener listener, final MoveLog moveHistory,
+            final CardAnimator animate) {
+        return CreateRules(type, state, state != null ? state.getSeed() : newSeed(), options, listener, moveHistory, animate);
+    }
+
+    // Deals the game numbered seed.
+    public static Rules CreateRules(final int type, final long seed, final GameOptions options, final GameListener listener, final MoveLog moveHistory,
+            final CardAnimator animate) {
+        return CreateRules(type, null, seed, options, listener, moveHistory, animate);
+    }
+
+    private static Rules CreateRules(final int type, final GameState state, final long seed, final GameOptions options, final GameListener listener,
+            final MoveLog moveHistory, final CardAnimator animate) {
         Rules ret = null;
         switch (type) {
             case SOLITAIRE:
@@ -207,12 +713,14 @@ public abstract class Rules {
 
         if (ret != null) {
             ret.SetType(type);
-            ret.SetView(view);
+            ret.mSeed = seed;
+            ret.SetListener(listener);
+            ret.SetOptions(options);
             ret.SetMoveHistory(moveHistory);
             ret.SetAnimateCard(animate);
             ret.SetEventPoster(new EventPoster(ret));
             ret.RefreshOptions();
-            ret.Init(map);
+            ret.Init(state);
         }
         return ret;
     }
@@ -220,6 +728,11 @@ public abstract class Rules {
 
 class NormalSolitaire extends Rules {
 
+    // The waste and the columns
+    private static final int[] AUTO_COMPLETE_FROM = { 1, 6, 7, 8, 9, 10, 11, 12 };
+    // Smart moves leave the waste alone
+    private static final int[] SMART_MOVE_FROM = { 6, 7, 8, 9, 10, 11, 12 };
+
     private boolean mDealThree;
     private int mDealsLeft;
     private String mScoreString;
@@ -227,9 +740,9 @@ class NormalSolitaire extends Rules {
     private int mCarryOverScore;
 
     @Override
-    public void Init(final Bundle map) {
+    public void Init(final GameState state) {
         mIgnoreEvents = true;
-        mDealThree = mView.GetSettings().getBoolean("SolitaireDealThree", false);
+        mDealThree = mOptions.getBoolean("SolitaireDealThree", false);
 
         // Thirteen total anchors for regular solitaire
         mCardCount = 52;
@@ -262,27 +775,14 @@ class NormalSolitaire extends Rules {
             mCardAnchor[i + 6].SetDisplay(GenericAnchor.DISPLAY_MIX);
         }
 
-        if (map != null) {
+        if (state != null) {
             // Do some assertions, default to a new game if we find an invalid state
-            if (map.getInt("cardAnchorCount") == 13 && map.getInt("cardCount") == 52) {
-                int[] cardCount = map.getIntArray("anchorCardCount");
-                int[] hiddenCount = map.getIntArray("anchorHiddenCount");
-                int[] value = map.getIntArray("value");
-                int[] suit = map.getIntArray("suit");
-                int cardIdx = 0;
-                mDealsLeft = map.getInt("rulesExtra");
-
-                for (int i = 0; i < 13; i++) {
-                    for (int j = 0; j < cardCount[i]; j++, cardIdx++) {
-                        Card card = new Card(value[cardIdx], suit[cardIdx]);
-                        mCardAnchor[i].AddCard(card);
-                    }
-                    mCardAnchor[i].SetHiddenCount(hiddenCount[i]);
-                }
+            if (state.restore(mCardAnchor, 52)) {
+                mDealsLeft = state.getRulesExtra();
                 if (mDealsLeft != -1) {
                     // Reset to zero as GetScore() uses it in its calculation.
                     mCarryOverScore = 0;
-                    mCarryOverScore = map.getInt("score") - GetScore();
+                    mCarryOverScore = state.getScore() - GetScore();
                 }
 
                 mIgnoreEvents = false;
@@ -291,7 +791,7 @@ class NormalSolitaire extends Rules {
             }
         }
 
-        mDeck = new Deck(1);
+        mDeck = new Deck(1, mSeed);
         for (int i = 0; i < 7; i++) {
             for (int j = 0; j <= i; j++) {
                 mCardAnchor[i + 6].AddCard(mDeck.PopCard());
@@ -303,7 +803,7 @@ class NormalSolitaire extends Rules {
             mCardAnchor[0].AddCard(mDeck.PopCard());
         }
 
-        if (mView.GetSettings().getBoolean("SolitaireStyleNormal", true)) {
+        if (mOptions.getBoolean("SolitaireStyleNormal", true)) {
             mDealsLeft = -1;
         } else {
             mDealsLeft = mDealThree ? 2 : 0;
@@ -367,8 +867,8 @@ class NormalSolitaire extends Rules {
                     mCardAnchor[0].AddCard(mCardAnchor[1].PopCard());
                     count++;
                 }
-                mMoveHistory.push(new Move(1, 0, count, true, false, addDealCount));
-                mView.Refresh();
+                mMoveHistory.push(Move.pack(1, 0, count, true, false, addDealCount));
+                refresh();
             } else {
                 int count = 0;
                 int maxCount = mDealThree ? 3 : 1;
@@ -379,16 +879,16 @@ class NormalSolitaire extends Rules {
                 if (mDealsLeft == 0 && mCardAnchor[0].GetCount() == 0) {
                     mCardAnchor[0].SetDone(true);
                 }
-                mMoveHistory.push(new Move(0, 1, count, true, false));
+                mMoveHistory.push(Move.pack(0, 1, count, true, false));
             }
         } else if (event == EVENT_STACK_ADD) {
-            if (mCardAnchor[2].GetCount() == 13 && mCardAnchor[3].GetCount() == 13 && mCardAnchor[4].GetCount() == 13 && mCardAnchor[5].GetCount() == 13) {
+            if (isWon()) {
                 SignalWin();
             } else {
                 if (mAutoMoveLevel == AUTO_MOVE_ALWAYS || (mAutoMoveLevel == AUTO_MOVE_FLING_ONLY && mWasFling)) {
                     EventAlert(EVENT_SMART_MOVE);
                 } else {
-                    mView.StopAnimating();
+                    stopAnimating();
                     mWasFling = false;
                 }
             }
@@ -396,7 +896,7 @@ class NormalSolitaire extends Rules {
     }
 
     @Override
-    public void EventProcess(final int event, final CardAnchor anchor, final Card card) {
+    public void EventProcess(final int event, final CardAnchor anchor, final int card) {
         if (mIgnoreEvents) {
             anchor.AddCard(card);
             return;
@@ -418,51 +918,32 @@ class NormalSolitaire extends Rules {
             return;
         }
         if (event == EVENT_SMART_MOVE) {
-            int i;
-            for (i = 0; i < 7; i++) {
-                if (mCardAnchor[i + 6].GetCount() > 0 && TryToSink(mCardAnchor[i + 6])) {
-                    break;
-                }
+            if (mCardAnchor[0].GetCount() == 0 && autoComplete(AUTO_COMPLETE_FROM, 2, 4)) {
+                return;
             }
-            if (i == 7) {
+            if (!autoMove(SMART_MOVE_FROM, 2, 4)) {
                 mWasFling = false;
-                mView.StopAnimating();
+                stopAnimating();
             }
         }
     }
 
     @Override
-    public boolean Fling(final MoveCard moveCard) {
-        if (moveCard.GetCount() == 1) {
-            CardAnchor anchor = moveCard.GetAnchor();
-            Card card = moveCard.DumpCards(false)[0];
-            for (int i = 0; i < 4; i++) {
-                if (mCardAnchor[i + 2].DropSingleCard(card)) {
-                    EventAlert(EVENT_FLING, anchor, card);
-                    return true;
-                }
+    public boolean Fling(final CardAnchor anchor, final int card) {
+        for (int i = 0; i < 4; i++) {
+            if (mCardAnchor[i + 2].DropSingleCard(card)) {
+                EventAlert(EVENT_FLING, anchor, card);
+                return true;
             }
-            anchor.AddCard(card);
-        } else {
-            moveCard.Release();
         }
         return false;
     }
 
-    private boolean TryToSink(final CardAnchor anchor) {
-        Card card = anchor.PopCard();
-        boolean ret = TryToSinkCard(anchor, card);
-        if (!ret) {
-            anchor.AddCard(card);
-        }
-        return ret;
-    }
-
-    private boolean TryToSinkCard(final CardAnchor anchor, final Card card) {
+    private boolean TryToSinkCard(final CardAnchor anchor, final int card) {
         for (int i = 0; i < 4; i++) {
             if (mCardAnchor[i + 2].DropSingleCard(card)) {
-                mMoveHistory.push(new Move(anchor.GetNumber(), i + 2, 1, false, anchor.UnhideTopCard()));
-                mAnimateCard.MoveCard(card, mCardAnchor[i + 2]);
+                mMoveHistory.push(Move.pack(anchor.GetNumber(), i + 2, 1, false, anchor.UnhideTopCard()));
+                moveCard(card, anchor, mCardAnchor[i + 2]);
                 return true;
             }
         }
@@ -475,6 +956,72 @@ class NormalSolitaire extends Rules {
         return mDealsLeft;
     }
 
+    @Override
+    protected int generateDeal(final int[] moves, final int count) {
+        int stock = mCardAnchor[0].GetCount();
+        if (stock > 0) {
+            int deal = mDealThree ? 3 : 1;
+            moves[count] = Move.pack(0, 1, stock < deal ? stock : deal, true, false);
+            return count + 1;
+        }
+        int waste = mCardAnchor[1].GetCount();
+        if (waste > 0 && mDealsLeft != 0) {
+            moves[count] = Move.pack(1, 0, waste, true, false, mDealsLeft > 0);
+            return count + 1;
+        }
+        return count;
+    }
+
+    // Dealing only helps if it turns up a card that can go somewhere. Nothing
+    // else changes while the cards go round, so those are the cards that
+    // land on top of the waste for the rest of this pass, and if there's
+    // another pass, for the whole of that one (every pass after is the same).
+    @Override
+    protected boolean canDealMore() {
+        CardAnchor stock = mCardAnchor[0];
+        CardAnchor waste = mCardAnchor[1];
+        int step = mDealThree ? 3 : 1;
+        int count = stock.GetCount();
+        // The stock deals off its top, the end of the array.
+        for (int dealt = step; dealt - step < count; dealt += step) {
+            if (canPlay(stock.getCard(Math.max(count - dealt, 0)))) {
+                return true;
+            }
+        }
+        if (mDealsLeft == 0) {
+            return false;
+        }
+        // Turned back over, the waste comes first, bottom card on top.
+        int total = waste.GetCount() + count;
+        for (int dealt = step; dealt - step < total; dealt += step) {
+            int pos = Math.min(dealt, total) - 1;
+            int card = pos < waste.GetCount() ? waste.getCard(pos) : stock.getCard(count - 1 - (pos - waste.GetCount()));
+            if (canPlay(card)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void setRulesExtra(final int extra) {
+        mDealsLeft = extra;
+        // As AddDealCount, for a board put back from before the last deal
+        if (mDealsLeft != 0) {
+            mCardAnchor[0].SetDone(false);
+        }
+    }
+
+    @Override
+    public boolean isWon() {
+        for (int i = 0; i < 4; i++) {
+            if (mCardAnchor[i + 2].GetCount() != 13) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String GetGameTypeString() {
         if (mDealsLeft == -1) {
@@ -560,13 +1107,20 @@ class NormalSolitaire extends Rules {
             mCardAnchor[0].SetDone(false);
         }
     }
+
+    @Override
+    public void removeDealCount() {
+        if (mDealsLeft > 0) {
+            mDealsLeft--;
+        }
+    }
 }
 
 class Spider extends Rules {
     private boolean mStillDealing;
 
     @Override
-    public void Init(final Bundle map) {
+    public void Init(final GameState state) {
         mIgnoreEvents = true;
         mStillDealing = false;
 
@@ -590,31 +1144,17 @@ class Spider extends Rules {
         mCardAnchor[10] = CardAnchor.CreateAnchor(CardAnchor.DEAL_FROM, 10, this);
         mCardAnchor[11] = CardAnchor.CreateAnchor(CardAnchor.DEAL_TO, 11, this);
 
-        if (map != null) {
+        if (state != null) {
             // Do some assertions, default to a new game if we find an invalid state
-            if (map.getInt("cardAnchorCount") == 12 && map.getInt("cardCount") == 104) {
-                int[] cardCount = map.getIntArray("anchorCardCount");
-                int[] hiddenCount = map.getIntArray("anchorHiddenCount");
-                int[] value = map.getIntArray("value");
-                int[] suit = map.getIntArray("suit");
-                int cardIdx = 0;
-
-                for (int i = 0; i < mCardAnchorCount; i++) {
-                    for (int j = 0; j < cardCount[i]; j++, cardIdx++) {
-                        Card card = new Card(value[cardIdx], suit[cardIdx]);
-                        mCardAnchor[i].AddCard(card);
-                    }
-                    mCardAnchor[i].SetHiddenCount(hiddenCount[i]);
-                }
-
+            if (state.restore(mCardAnchor, 104)) {
                 mIgnoreEvents = false;
                 // Return here so an invalid save state will result in a new game
                 return;
             }
         }
 
-        int suits = mView.GetSettings().getInt("SpiderSuits", 4);
-        mDeck = new Deck(2, suits);
+        int suits = mOptions.getInt("SpiderSuits", 4);
+        mDeck = new Deck(2, suits, mSeed);
         int i = 54;
         while (i > 0) {
             for (int j = 0; j < 10 && i > 0; j++) {
@@ -655,7 +1195,7 @@ class Spider extends Rules {
     }
 
     @Override
-    public void EventProcess(final int event, final CardAnchor anchor, final Card card) {
+    public void EventProcess(final int event, final CardAnchor anchor, final int card) {
         anchor.AddCard(card);
     }
 
@@ -665,26 +1205,14 @@ class Spider extends Rules {
             return;
         }
         if (event == EVENT_STACK_ADD) {
-            if (anchor.GetCount() - anchor.GetHiddenCount() >= 13) {
-                Card[] card = anchor.GetCards();
-                if (card[anchor.GetCount() - 1].GetValue() == 1) {
-                    int suit = card[anchor.GetCount() - 1].GetSuit();
-                    int val = 2;
-                    for (int i = anchor.GetCount() - 2; i >= 0 && val < 14; i--, val++) {
-                        if (card[i].GetValue() != val || card[i].GetSuit() != suit) {
-                            break;
-                        }
-                    }
-                    if (val == 14) {
-                        for (int j = 0; j < 13; j++) {
-                            mCardAnchor[11].AddCard(anchor.PopCard());
-                        }
-                        mMoveHistory.push(new Move(anchor.GetNumber(), 11, 13, true, anchor.UnhideTopCard()));
+            if (anchor.isRunDone()) {
+                for (int j = 0; j < 13; j++) {
+                    mCardAnchor[11].AddCard(anchor.PopCard());
+                }
+                mMoveHistory.push(Move.pack(anchor.GetNumber(), 11, 13, true, anchor.UnhideTopCard()));
 
-                        if (mCardAnchor[11].GetCount() == mCardCount) {
-                            SignalWin();
-                        }
-                    }
+                if (isWon()) {
+                    SignalWin();
                 }
             }
             if (mStillDealing) {
@@ -694,23 +1222,50 @@ class Spider extends Rules {
         } else if (event == EVENT_DEAL) {
             if (mCardAnchor[10].GetCount() > 0) {
                 int count = mCardAnchor[10].GetCount() > 10 ? 10 : mCardAnchor[10].GetCount();
-                mAnimateCard.MoveCard(mCardAnchor[10].PopCard(), mCardAnchor[0]);
-                mMoveHistory.push(new Move(10, 0, count - 1, 1, false, false));
+                moveCard(mCardAnchor[10].PopCard(), mCardAnchor[10], mCardAnchor[0]);
+                mMoveHistory.push(Move.pack(10, 0, count - 1, 1, 0));
                 mStillDealing = true;
             }
         } else if (event == EVENT_DEAL_NEXT) {
             if (mCardAnchor[10].GetCount() > 0 && anchor.GetNumber() < 10) {
-                mAnimateCard.MoveCard(mCardAnchor[10].PopCard(), anchor);
+                moveCard(mCardAnchor[10].PopCard(), mCardAnchor[10], anchor);
             } else {
-                mView.StopAnimating();
+                stopAnimating();
                 mStillDealing = false;
             }
         }
     }
 
+    @Override
+    protected int generateDeal(final int[] moves, final int count) {
+        int stock = mCardAnchor[10].GetCount();
+        if (stock == 0) {
+            return count;
+        }
+        // A card onto each of the first stock (up to ten) columns
+        moves[count] = Move.pack(10, 0, (stock > 10 ? 10 : stock) - 1, 1, 0);
+        return count + 1;
+    }
+
+    // The finished runs are put out of reach.
+    @Override
+    protected boolean canMoveFrom(final int anchor) {
+        return anchor != 11;
+    }
+
+    @Override
+    protected boolean canDealMore() {
+        return mCardAnchor[10].GetCount() > 0;
+    }
+
+    @Override
+    public boolean isWon() {
+        return mCardAnchor[11].GetCount() == mCardCount;
+    }
+
     @Override
     public String GetGameTypeString() {
-        int suits = mView.GetSettings().getInt("SpiderSuits", 4);
+        int suits = mOptions.getInt("SpiderSuits", 4);
         if (suits == 1) {
             return "Spider1Suit";
         } else if (suits == 2) {
@@ -722,7 +1277,7 @@ class Spider extends Rules {
 
     @Override
     public String GetPrettyGameTypeString() {
-        int suits = mView.GetSettings().getInt("SpiderSuits", 4);
+        int suits = mOptions.getInt("SpiderSuits", 4);
         if (suits == 1) {
             return "Spider One Suit";
         } else if (suits == 2) {
@@ -750,8 +1305,11 @@ class Spider extends Rules {
 
 class Freecell extends Rules {
 
+    // The free cells and the columns
+    private static final int[] SMART_MOVE_FROM = { 0, 1, 2, 3, 8, 9, 10, 11, 12, 13, 14, 15 };
+
     @Override
-    public void Init(final Bundle map) {
+    public void Init(final GameState state) {
         mIgnoreEvents = true;
 
         // Thirteen total anchors for regular solitaire
@@ -774,33 +1332,29 @@ class Freecell extends Rules {
             mCardAnchor[i + 8] = CardAnchor.CreateAnchor(CardAnchor.FREECELL_STACK, i + 8, this);
         }
 
-        if (map != null) {
+        if (state != null) {
             // Do some assertions, default to a new game if we find an invalid state
-            if (map.getInt("cardAnchorCount") == 16 && map.getInt("cardCount") == 52) {
-                int[] cardCount = map.getIntArray("anchorCardCount");
-                int[] hiddenCount = map.getIntArray("anchorHiddenCount");
-                int[] value = map.getIntArray("value");
-                int[] suit = map.getIntArray("suit");
-                int cardIdx = 0;
-
-                for (int i = 0; i < 16; i++) {
-                    for (int j = 0; j < cardCount[i]; j++, cardIdx++) {
-                        Card card = new Card(value[cardIdx], suit[cardIdx]);
-                        mCardAnchor[i].AddCard(card);
-                    }
-                    mCardAnchor[i].SetHiddenCount(hiddenCount[i]);
-                }
-
+            if (state.restore(mCardAnchor, 52)) {
                 mIgnoreEvents = false;
                 // Return here so an invalid save state will result in a new game
                 return;
             }
         }
 
-        mDeck = new Deck(1);
-        while (!mDeck.Empty()) {
-            for (int i = 0; i < 8 && !mDeck.Empty(); i++) {
-                mCardAnchor[i + 8].AddCard(mDeck.PopCard());
+        if (mOptions.getBoolean("FreecellMSDeals", false)) {
+            // The seed becomes the deal number, so it still names the game.
+            mSeed = MicrosoftDeal.fromSeed(mSeed);
+            byte[] card = new byte[52];
+            MicrosoftDeal.deal((int) mSeed, card);
+            for (int i = 0; i < 52; i++) {
+                mCardAnchor[i % 8 + 8].AddCard(card[i]);
+            }
+        } else {
+            mDeck = new Deck(1, mSeed);
+            while (!mDeck.Empty()) {
+                for (int i = 0; i < 8 && !mDeck.Empty(); i++) {
+                    mCardAnchor[i + 8].AddCard(mDeck.PopCard());
+                }
             }
         }
         mIgnoreEvents = false;
@@ -832,13 +1386,13 @@ class Freecell extends Rules {
         }
         if (event == EVENT_STACK_ADD) {
             if (anchor.GetNumber() >= 4 && anchor.GetNumber() < 8) {
-                if (mCardAnchor[4].GetCount() == 13 && mCardAnchor[5].GetCount() == 13 && mCardAnchor[6].GetCount() == 13 && mCardAnchor[7].GetCount() == 13) {
+                if (isWon()) {
                     SignalWin();
                 } else {
                     if (mAutoMoveLevel == AUTO_MOVE_ALWAYS || (mAutoMoveLevel == AUTO_MOVE_FLING_ONLY && mWasFling)) {
                         EventAlert(EVENT_SMART_MOVE);
                     } else {
-                        mView.StopAnimating();
+                        stopAnimating();
                         mWasFling = false;
                     }
                 }
@@ -847,26 +1401,18 @@ class Freecell extends Rules {
     }
 
     @Override
-    public boolean Fling(final MoveCard moveCard) {
-        if (moveCard.GetCount() == 1) {
-            CardAnchor anchor = moveCard.GetAnchor();
-            Card card = moveCard.DumpCards(false)[0];
-            for (int i = 0; i < 4; i++) {
-                if (mCardAnchor[i + 4].DropSingleCard(card)) {
-                    EventAlert(EVENT_FLING, anchor, card);
-                    return true;
-                }
+    public boolean Fling(final CardAnchor anchor, final int card) {
+        for (int i = 0; i < 4; i++) {
+            if (mCardAnchor[i + 4].DropSingleCard(card)) {
+                EventAlert(EVENT_FLING, anchor, card);
+                return true;
             }
-            anchor.AddCard(card);
-        } else {
-            moveCard.Release();
         }
-
         return false;
     }
 
     @Override
-    public void EventProcess(final int event, final CardAnchor anchor, final Card card) {
+    public void EventProcess(final int event, final CardAnchor anchor, final int card) {
         if (mIgnoreEvents) {
             anchor.AddCard(card);
             return;
@@ -882,20 +1428,11 @@ class Freecell extends Rules {
         }
     }
 
-    private boolean TryToSink(final CardAnchor anchor) {
-        Card card = anchor.PopCard();
-        boolean ret = TryToSinkCard(anchor, card);
-        if (!ret) {
-            anchor.AddCard(card);
-        }
-        return ret;
-    }
-
-    private boolean TryToSinkCard(final CardAnchor anchor, final Card card) {
+    private boolean TryToSinkCard(final CardAnchor anchor, final int card) {
         for (int i = 0; i < 4; i++) {
             if (mCardAnchor[i + 4].DropSingleCard(card)) {
-                mAnimateCard.MoveCard(card, mCardAnchor[i + 4]);
-                mMoveHistory.push(new Move(anchor.GetNumber(), i + 4, 1, false, false));
+                moveCard(card, anchor, mCardAnchor[i + 4]);
+                mMoveHistory.push(Move.pack(anchor.GetNumber(), i + 4, 1, false, false));
                 return true;
             }
         }
@@ -909,18 +1446,12 @@ class Freecell extends Rules {
             return;
         }
         if (event == EVENT_SMART_MOVE) {
-            for (int i = 0; i < 4; i++) {
-                if (mCardAnchor[i].GetCount() > 0 && TryToSink(mCardAnchor[i])) {
-                    return;
-                }
-            }
-            for (int i = 0; i < 8; i++) {
-                if (mCardAnchor[i + 8].GetCount() > 0 && TryToSink(mCardAnchor[i + 8])) {
-                    return;
-                }
+            // Everything can go home from anywhere, so when this finishes
+            // the game there's no need for autoComplete.
+            if (!autoMove(SMART_MOVE_FROM, 4, 4)) {
+                mWasFling = false;
+                stopAnimating();
             }
-            mWasFling = false;
-            mView.StopAnimating();
         }
     }
 
@@ -940,6 +1471,16 @@ class Freecell extends Rules {
         return free;
     }
 
+    @Override
+    public boolean isWon() {
+        for (int i = 0; i < 4; i++) {
+            if (mCardAnchor[i + 4].GetCount() != 13) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String GetGameTypeString() {
         return "Freecell";
@@ -953,8 +1494,15 @@ class Freecell extends Rules {
 
 class FortyThieves extends Rules {
 
+    // The most a new game spends looking for a winnable deal.
+    private static final long WINNABLE_MILLIS = 800;
+    // The columns and the waste
+    private static final int[] AUTO_COMPLETE_FROM = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 19 };
+    // Smart moves leave the waste alone
+    private static final int[] SMART_MOVE_FROM = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+
     @Override
-    public void Init(final Bundle map) {
+    public void Init(final GameState state) {
         mIgnoreEvents = true;
 
         mCardCount = 104;
@@ -980,30 +1528,24 @@ class FortyThieves extends Rules {
         mCardAnchor[18] = CardAnchor.CreateAnchor(CardAnchor.DEAL_FROM, 18, this);
         mCardAnchor[19] = CardAnchor.CreateAnchor(CardAnchor.DEAL_TO, 19, this);
 
-        if (map != null) {
+        if (state != null) {
             // Do some assertions, default to a new game if we find an invalid state
-            if (map.getInt("cardAnchorCount") == 20 && map.getInt("cardCount") == 104) {
-                int[] cardCount = map.getIntArray("anchorCardCount");
-                int[] hiddenCount = map.getIntArray("anchorHiddenCount");
-                int[] value = map.getIntArray("value");
-                int[] suit = map.getIntArray("suit");
-                int cardIdx = 0;
-
-                for (int i = 0; i < 20; i++) {
-                    for (int j = 0; j < cardCount[i]; j++, cardIdx++) {
-                        Card card = new Card(value[cardIdx], suit[cardIdx]);
-                        mCardAnchor[i].AddCard(card);
-                    }
-                    mCardAnchor[i].SetHiddenCount(hiddenCount[i]);
-                }
-
+            if (state.restore(mCardAnchor, 104)) {
                 mIgnoreEvents = false;
                 // Return here so an invalid save state will result in a new game
                 return;
             }
         }
 
-        mDeck = new Deck(2);
+        mDeck = new Deck(2, mSeed);
+        Deal();
+        if (mOptions.getBoolean("FortyThievesWinnable", false)) {
+            DealWinnable();
+        }
+        mIgnoreEvents = false;
+    }
+
+    private void Deal() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 4; j++) {
                 mCardAnchor[i].AddCard(mDeck.PopCard());
@@ -1012,7 +1554,32 @@ class FortyThieves extends Rules {
         while (!mDeck.Empty()) {
             mCardAnchor[18].AddCard(mDeck.PopCard());
         }
-        mIgnoreEvents = false;
+    }
+
+    // Deals again until the solver finds a way through, giving each deal a
+    // slice of WINNABLE_MILLIS. If none turns up in time the last deal is
+    // kept anyway, starting a game shouldn't take longer than that. Each new
+    // deal gets a seed of its own, so the seed still says which game it is.
+    private void DealWinnable() {
+        long deadline = System.currentTimeMillis() + WINNABLE_MILLIS;
+        long left = WINNABLE_MILLIS;
+        while (left > 0) {
+            long millis = Math.min(left, FortyThievesSolver.DEFAULT_MILLIS);
+            if (FortyThievesSolver.isWinnable(GameState.capture(this), mOptions, FortyThievesSolver.DEFAULT_NODES, millis)) {
+                return;
+            }
+            left = deadline - System.currentTimeMillis();
+            if (left > 0) {
+                for (int i = 0; i < mCardAnchorCount; i++) {
+                    while (mCardAnchor[i].GetCount() > 0) {
+                        mCardAnchor[i].PopCard();
+                    }
+                }
+                mSeed = Zobrist.mix(mSeed);
+                mDeck = new Deck(2, mSeed);
+                Deal();
+            }
+        }
     }
 
     @Override
@@ -1036,25 +1603,18 @@ class FortyThieves extends Rules {
     }
 
     @Override
-    public boolean Fling(final MoveCard moveCard) {
-        if (moveCard.GetCount() == 1) {
-            CardAnchor anchor = moveCard.GetAnchor();
-            Card card = moveCard.DumpCards(false)[0];
-            for (int i = 0; i < 8; i++) {
-                if (mCardAnchor[i + 10].DropSingleCard(card)) {
-                    mEventPoster.PostEvent(EVENT_FLING, anchor, card);
-                    return true;
-                }
+    public boolean Fling(final CardAnchor anchor, final int card) {
+        for (int i = 0; i < 8; i++) {
+            if (mCardAnchor[i + 10].DropSingleCard(card)) {
+                mEventPoster.PostEvent(EVENT_FLING, anchor, card);
+                return true;
             }
-            anchor.AddCard(card);
-        } else {
-            moveCard.Release();
         }
         return false;
     }
 
     @Override
-    public void EventProcess(final int event, final CardAnchor anchor, final Card card) {
+    public void EventProcess(final int event, final CardAnchor anchor, final int card) {
         if (mIgnoreEvents) {
             anchor.AddCard(card);
             return;
@@ -1070,20 +1630,11 @@ class FortyThieves extends Rules {
         }
     }
 
-    private boolean TryToSink(final CardAnchor anchor) {
-        Card card = anchor.PopCard();
-        boolean ret = TryToSinkCard(anchor, card);
-        if (!ret) {
-            anchor.AddCard(card);
-        }
-        return ret;
-    }
-
-    private boolean TryToSinkCard(final CardAnchor anchor, final Card card) {
+    private boolean TryToSinkCard(final CardAnchor anchor, final int card) {
         for (int i = 0; i < 8; i++) {
             if (mCardAnchor[i + 10].DropSingleCard(card)) {
-                mAnimateCard.MoveCard(card, mCardAnchor[i + 10]);
-                mMoveHistory.push(new Move(anchor.GetNumber(), i + 10, 1, false, false));
+                moveCard(card, anchor, mCardAnchor[i + 10]);
+                mMoveHistory.push(Move.pack(anchor.GetNumber(), i + 10, 1, false, false));
                 return true;
             }
         }
@@ -1101,18 +1652,17 @@ class FortyThieves extends Rules {
                 if (mCardAnchor[18].GetCount() == 0) {
                     mCardAnchor[18].SetDone(true);
                 }
-                mMoveHistory.push(new Move(18, 19, 1, true, false));
+                mMoveHistory.push(Move.pack(18, 19, 1, true, false));
             }
         } else if (event == EVENT_STACK_ADD) {
             if (anchor.GetNumber() >= 10 && anchor.GetNumber() < 18) {
-                if (mCardAnchor[10].GetCount() == 13 && mCardAnchor[11].GetCount() == 13 && mCardAnchor[12].GetCount() == 13 && mCardAnchor[13].GetCount() == 13 && mCardAnchor[14].GetCount() == 13
-                        && mCardAnchor[15].GetCount() == 13 && mCardAnchor[16].GetCount() == 13 && mCardAnchor[17].GetCount() == 13) {
+                if (isWon()) {
                     SignalWin();
                 } else {
                     if (mAutoMoveLevel == AUTO_MOVE_ALWAYS || (mAutoMoveLevel == AUTO_MOVE_FLING_ONLY && mWasFling)) {
                         mEventPoster.PostEvent(EVENT_SMART_MOVE);
                     } else {
-                        mView.StopAnimating();
+                        stopAnimating();
                         mWasFling = false;
                     }
                 }
@@ -1126,13 +1676,13 @@ class FortyThieves extends Rules {
             return;
         }
         if (event == EVENT_SMART_MOVE) {
-            for (int i = 0; i < 10; i++) {
-                if (mCardAnchor[i].GetCount() > 0 && TryToSink(mCardAnchor[i])) {
-                    return;
-                }
+            if (mCardAnchor[18].GetCount() == 0 && autoComplete(AUTO_COMPLETE_FROM, 10, 8)) {
+                return;
+            }
+            if (!autoMove(SMART_MOVE_FROM, 10, 8)) {
+                mWasFling = false;
+                stopAnimating();
             }
-            mWasFling = false;
-            mView.StopAnimating();
         }
     }
 
@@ -1147,6 +1697,30 @@ class FortyThieves extends Rules {
         return free;
     }
 
+    @Override
+    protected int generateDeal(final int[] moves, final int count) {
+        if (mCardAnchor[18].GetCount() == 0) {
+            return count;
+        }
+        moves[count] = Move.pack(18, 19, 1, true, false);
+        return count + 1;
+    }
+
+    @Override
+    protected boolean canDealMore() {
+        return mCardAnchor[18].GetCount() > 0;
+    }
+
+    @Override
+    public boolean isWon() {
+        for (int i = 0; i < 8; i++) {
+            if (mCardAnchor[i + 10].GetCount() != 13) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String GetGameTypeString() {
         return "Forty Thieves";
@@ -1176,25 +1750,25 @@ class FortyThieves extends Rules {
 class EventPoster {
     private int mEvent;
     private CardAnchor mCardAnchor;
-    private Card mCard;
+    private int mCard;
     private Rules mRules;
 
     public EventPoster(final Rules rules) {
         mRules = rules;
         mEvent = -1;
         mCardAnchor = null;
-        mCard = null;
+        mCard = Card.NONE;
     }
 
     public void PostEvent(final int event) {
-        PostEvent(event, null, null);
+        PostEvent(event, null, Card.NONE);
     }
 
     public void PostEvent(final int event, final CardAnchor anchor) {
-        PostEvent(event, anchor, null);
+        PostEvent(event, anchor, Card.NONE);
     }
 
-    public void PostEvent(final int event, final CardAnchor anchor, final Card card) {
+    public void PostEvent(final int event, final CardAnchor anchor, final int card) {
         mEvent = event;
         mCardAnchor = anchor;
         mCard = card;
@@ -1203,7 +1777,7 @@ class EventPoster {
     public void ClearEvent() {
         mEvent = Rules.EVENT_INVALID;
         mCardAnchor = null;
-        mCard = null;
+        mCard = Card.NONE;
     }
 
     public boolean HasEvent() {
@@ -1214,9 +1788,9 @@ class EventPoster {
         if (HasEvent()) {
             int event = mEvent;
             CardAnchor cardAnchor = mCardAnchor;
-            Card card = mCard;
+            int card = mCard;
             ClearEvent();
-            if (cardAnchor != null && card != null) {
+            if (cardAnchor != null && card != Card.NONE) {
                 mRules.EventProcess(event, cardAnchor, card);
             } else if (cardAnchor != null) {
                 mRules.EventProcess(event, cardAnchor);
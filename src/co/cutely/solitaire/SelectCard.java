@@ -23,14 +23,17 @@ class SelectCard {
 
     private boolean mValid;
     private int mSelected;
-    private Card[] mCard;
+    private int[] mCard;
+    private float mX;
+    private float[] mY;
     private int mCardCount;
     private CardAnchor mCardAnchor;
     private float mLeftEdge;
     private float mRightEdge;
 
     public SelectCard() {
-        mCard = new Card[MAX_CARDS];
+        mCard = new int[MAX_CARDS];
+        mY = new float[MAX_CARDS];
         Clear();
     }
 
@@ -41,9 +44,6 @@ class SelectCard {
         mLeftEdge = -1;
         mRightEdge = -1;
         mCardAnchor = null;
-        for (int i = 0; i < MAX_CARDS; i++) {
-            mCard[i] = null;
-        }
     }
 
     public boolean IsValid() {
@@ -64,7 +64,7 @@ class SelectCard {
     public void Draw(final DrawMaster drawMaster, final Canvas canvas) {
         drawMaster.DrawLightShade(canvas);
         for (int i = 0; i < mCardCount; i++) {
-            drawMaster.DrawCard(canvas, mCard[i]);
+            drawMaster.DrawCard(canvas, mCard[i], mX, mY[i]);
         }
     }
 
@@ -72,25 +72,25 @@ class SelectCard {
         mValid = true;
         mSelected = -1;
         mCardAnchor = cardAnchor;
-        Card[] card = cardAnchor.GetCardStack();
-        for (int i = 0; i < card.length; i++) {
-            mCard[i] = card[i];
-        }
-        mCardCount = card.length;
+        mCardCount = cardAnchor.getStackCount();
 
+        // Where the cards are has to be read before they leave the anchor.
         int mid = mCardCount / 2;
         if (mCardCount % 2 == 0) {
             mid--;
         }
-        float x = mCard[0].GetX();
-        float y = mCard[mid].GetY();
+        int first = cardAnchor.GetCount() - mCardCount;
+        mX = cardAnchor.getCardX(first);
+        float y = cardAnchor.getCardY(first + mid);
         if (y - mid * (Card.HEIGHT + 5) < 0) {
             mid = 0;
             y = 5;
         }
 
+        int[] card = cardAnchor.GetCardStack();
         for (int i = 0; i < mCardCount; i++) {
-            mCard[i].SetPosition(x, y + (i - mid) * (Card.HEIGHT + 5));
+            mCard[i] = card[i];
+            mY[i] = y + (i - mid) * (Card.HEIGHT + 5);
         }
 
         mLeftEdge = cardAnchor.GetLeftEdge();
@@ -98,12 +98,12 @@ class SelectCard {
     }
 
     public boolean Tap(final float x, final float y) {
-        float left = mLeftEdge == -1 ? mCard[0].GetX() : mLeftEdge;
-        float right = mRightEdge == -1 ? mCard[0].GetX() + Card.WIDTH : mRightEdge;
+        float left = mLeftEdge == -1 ? mX : mLeftEdge;
+        float right = mRightEdge == -1 ? mX + Card.WIDTH : mRightEdge;
         mSelected = -1;
         if (x >= left && x <= right) {
             for (int i = 0; i < mCardCount; i++) {
-                if (y >= mCard[i].GetY() && y <= mCard[i].GetY() + Card.HEIGHT) {
+                if (y >= mY[i] && y <= mY[i] + Card.HEIGHT) {
                     mSelected = i;
                     return true;
                 }
@@ -122,8 +122,8 @@ class SelectCard {
         }
     }
 
-    public Card[] DumpCards() {
-        Card[] ret = null;
+    public int[] DumpCards() {
+        int[] ret = null;
         if (mValid) {
             mValid = false;
             if (mSelected > 0) {
@@ -139,7 +139,7 @@ class SelectCard {
                 }
             }
 
-            ret = new Card[GetCount()];
+            ret = new int[GetCount()];
             for (int i = 0; i < GetCount(); i++) {
                 ret[i] = mCard[i];
             }
@@ -149,11 +149,8 @@ class SelectCard {
     }
 
     public void Scroll(final float dy) {
-        float x, y;
         for (int i = 0; i < mCardCount; i++) {
-            x = mCard[i].GetX();
-            y = mCard[i].GetY() - dy;
-            mCard[i].SetPosition(x, y);
+            mY[i] -= dy;
         }
     }
 
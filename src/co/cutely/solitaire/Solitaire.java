@@ -39,6 +39,8 @@ public class Solitaire extends Activity {
     private static final int MENU_FORTYTHIEVES = 9;
     private static final int MENU_STATS = 10;
     private static final int MENU_HELP = 11;
+    private static final int MENU_REDO = 12;
+    private static final int MENU_BRANCHES = 13;
 
     // View extracted from main.xml.
     private View mMainView;
@@ -118,6 +120,8 @@ public class Solitaire extends Activity {
         subMenu.add(0, MENU_FREECELL, 0, R.string.menu_freecell);
         subMenu.add(0, MENU_FORTYTHIEVES, 0, R.string.menu_fortythieves);
 
+        menu.add(0, MENU_REDO, 0, R.string.menu_redo);
+        menu.add(0, MENU_BRANCHES, 0, R.string.menu_branches);
         menu.add(0, MENU_RESTART, 0, R.string.menu_restart);
         menu.add(0, MENU_OPTIONS, 0, R.string.menu_options);
         menu.add(0, MENU_SAVE_QUIT, 0, R.string.menu_save_quit);
@@ -142,6 +146,12 @@ public class Solitaire extends Activity {
             case MENU_FORTYTHIEVES:
                 mSolitaireView.InitGame(Rules.FORTYTHIEVES);
                 break;
+            case MENU_REDO:
+                mSolitaireView.Redo();
+                break;
+            case MENU_BRANCHES:
+                mSolitaireView.DisplayBranches();
+                break;
             case MENU_RESTART:
                 mSolitaireView.RestartGame();
                 break;
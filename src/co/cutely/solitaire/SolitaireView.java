@@ -22,13 +22,13 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.StreamCorruptedException;
-import java.util.Stack;
 
+import android.app.AlertDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.SharedPreferences;
 import android.graphics.Canvas;
 import android.graphics.PointF;
-import android.os.Bundle;
 import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -39,7 +39,7 @@ import android.view.View;
 import android.widget.TextView;
 
 // The brains of the operation
-public class SolitaireView extends View {
+public class SolitaireView extends View implements GameListener {
 
     private static final int MODE_NORMAL = 1;
     private static final int MODE_MOVE_CARD = 2;
@@ -51,7 +51,8 @@ public class SolitaireView extends View {
 
     private static final String SAVE_FILENAME = "solitaire_save.bin";
     // This is incremented only when the save system changes.
-    private static final String SAVE_VERSION = "solitaire_save_2";
+    private static final String SAVE_VERSION = "solitaire_save_5";
+    private static final String DEAL_POOL_FILENAME = "deal_pool.bin";
 
     private CharSequence mHelpText;
     private CharSequence mWinText;
@@ -73,14 +74,12 @@ public class SolitaireView extends View {
     private PointF mDownPoint;
     private RefreshHandler mRefreshHandler;
     private Thread mRefreshThread;
-    private Stack<Move> mMoveHistory;
+    private UndoTree mMoveHistory;
     private Replay mReplay;
     private Context mContext;
     private boolean mHasMoved;
     private Speed mSpeed;
 
-    private Card[] mUndoStorage;
-
     private int mElapsed = 0;
     private long mStartTime;
     private boolean mTimePaused;
@@ -91,6 +90,12 @@ public class SolitaireView extends View {
 
     private int mWinningScore;
 
+    // The last position the player was told they're stuck in
+    private long mStuckHash;
+
+    // Winnable deals made in the background, loaded the first time a game wants one.
+    private DealPool mDealPool;
+
     public SolitaireView(final Context context, final AttributeSet attrs) {
         super(context, attrs);
         setFocusable(true);
@@ -104,8 +109,7 @@ public class SolitaireView extends View {
         mDownPoint = new PointF();
         mRefreshHandler = new RefreshHandler(this);
         mRefreshThread = new Thread(mRefreshHandler);
-        mMoveHistory = new Stack<Move>();
-        mUndoStorage = new Card[CardAnchor.MAX_CARDS];
+        mMoveHistory = new UndoTree();
         mAnimateCard = new AnimateCard(this);
         mSpeed = new Speed();
         mReplay = new Replay(this, mAnimateCard);
@@ -144,7 +148,19 @@ public class SolitaireView extends View {
         ChangeViewMode(MODE_NORMAL);
         mTextView.setVisibility(View.INVISIBLE);
         mMoveHistory.clear();
-        mRules = Rules.CreateRules(gameType, null, this, mMoveHistory, mAnimateCard);
+        if (mRules != null) {
+            mRules.stopHint();
+        }
+        GameOptions options = new SettingsOptions(GetSettings());
+        GameState deal = null;
+        if (DealPool.isWanted(gameType, options)) {
+            deal = GetDealPool().poll(gameType, options);
+        } else if (mDealPool != null) {
+            mDealPool.pause();
+        }
+        mRules = Rules.CreateRules(gameType, deal, options, this, mMoveHistory, mAnimateCard);
+        // The deal is the first checkpoint
+        mMoveHistory.checkpoint(mRules);
         if (oldGameType == mRules.GetGameTypeString()) {
             mRules.SetCarryOverScore(oldScore);
         }
@@ -257,6 +273,9 @@ public class SolitaireView extends View {
 
     public void onPause() {
         mPaused = true;
+        if (mDealPool != null) {
+            mDealPool.pause();
+        }
 
         if (mRefreshThread != null) {
             mRefreshHandler.SetRunning(false);
@@ -288,6 +307,7 @@ public class SolitaireView extends View {
         if (mRefreshThread != null) {
             onPause();
         }
+        SaveDealPool();
 
         if (mRules != null && mViewMode == MODE_NORMAL) {
             try {
@@ -295,55 +315,13 @@ public class SolitaireView extends View {
                 FileOutputStream fout = mContext.openFileOutput(SAVE_FILENAME, 0);
                 ObjectOutputStream oout = new ObjectOutputStream(fout);
 
-                int cardCount = mRules.GetCardCount();
-                int[] value = new int[cardCount];
-                int[] suit = new int[cardCount];
-                int[] anchorCardCount = new int[mCardAnchor.length];
-                int[] anchorHiddenCount = new int[mCardAnchor.length];
-                int historySize = mMoveHistory.size();
-                int[] historyFrom = new int[historySize];
-                int[] historyToBegin = new int[historySize];
-                int[] historyToEnd = new int[historySize];
-                int[] historyCount = new int[historySize];
-                int[] historyFlags = new int[historySize];
-                Card[] card;
-
-                cardCount = 0;
-                for (int i = 0; i < mCardAnchor.length; i++) {
-                    anchorCardCount[i] = mCardAnchor[i].GetCount();
-                    anchorHiddenCount[i] = mCardAnchor[i].GetHiddenCount();
-                    card = mCardAnchor[i].GetCards();
-                    for (int j = 0; j < anchorCardCount[i]; j++, cardCount++) {
-                        value[cardCount] = card[j].GetValue();
-                        suit[cardCount] = card[j].GetSuit();
-                    }
-                }
-
-                for (int i = 0; i < historySize; i++) {
-                    Move move = mMoveHistory.pop();
-                    historyFrom[i] = move.GetFrom();
-                    historyToBegin[i] = move.GetToBegin();
-                    historyToEnd[i] = move.GetToEnd();
-                    historyCount[i] = move.GetCount();
-                    historyFlags[i] = move.GetFlags();
-                }
+                GameState state = GameState.capture(mRules);
 
                 oout.writeObject(SAVE_VERSION);
-                oout.writeInt(mCardAnchor.length);
-                oout.writeInt(cardCount);
-                oout.writeInt(mRules.GetType());
-                oout.writeObject(anchorCardCount);
-                oout.writeObject(anchorHiddenCount);
-                oout.writeObject(value);
-                oout.writeObject(suit);
-                oout.writeInt(mRules.GetRulesExtra());
-                oout.writeInt(mRules.GetScore());
+                state.write(oout);
                 oout.writeInt(mElapsed);
-                oout.writeObject(historyFrom);
-                oout.writeObject(historyToBegin);
-                oout.writeObject(historyToEnd);
-                oout.writeObject(historyCount);
-                oout.writeObject(historyFlags);
+                // Everything that was undone too, so redo still works
+                mMoveHistory.write(oout);
                 oout.close();
 
                 SharedPreferences.Editor editor = GetSettings().edit();
@@ -371,32 +349,19 @@ public class SolitaireView extends View {
                 Log.e("SolitaireView.java", "Invalid save version");
                 return false;
             }
-            Bundle map = new Bundle();
-
-            map.putInt("cardAnchorCount", oin.readInt());
-            map.putInt("cardCount", oin.readInt());
-            int type = oin.readInt();
-            map.putIntArray("anchorCardCount", (int[]) oin.readObject());
-            map.putIntArray("anchorHiddenCount", (int[]) oin.readObject());
-            map.putIntArray("value", (int[]) oin.readObject());
-            map.putIntArray("suit", (int[]) oin.readObject());
-            map.putInt("rulesExtra", oin.readInt());
-            map.putInt("score", oin.readInt());
+            GameState state = GameState.read(oin);
+            int type = state.getType();
             mElapsed = oin.readInt();
             mStartTime = SystemClock.uptimeMillis() - mElapsed;
-            int[] historyFrom = (int[]) oin.readObject();
-            int[] historyToBegin = (int[]) oin.readObject();
-            int[] historyToEnd = (int[]) oin.readObject();
-            int[] historyCount = (int[]) oin.readObject();
-            int[] historyFlags = (int[]) oin.readObject();
-            for (int i = historyFrom.length - 1; i >= 0; i--) {
-                mMoveHistory.push(new Move(historyFrom[i], historyToBegin[i], historyToEnd[i], historyCount[i], historyFlags[i]));
-            }
+            mMoveHistory.read(oin);
 
             oin.close();
 
             mGameStarted = !mMoveHistory.isEmpty();
-            mRules = Rules.CreateRules(type, map, this, mMoveHistory, mAnimateCard);
+            if (mRules != null) {
+                mRules.stopHint();
+            }
+            mRules = Rules.CreateRules(type, state, new SettingsOptions(GetSettings()), this, mMoveHistory, mAnimateCard);
             Card.SetSize(type);
             SetDisplayTime(GetSettings().getBoolean("DisplayTime", true));
             mCardAnchor = mRules.GetAnchorArray();
@@ -421,6 +386,39 @@ public class SolitaireView extends View {
         return false;
     }
 
+    private DealPool GetDealPool() {
+        if (mDealPool == null) {
+            mDealPool = new DealPool();
+            try {
+                ObjectInputStream oin = new ObjectInputStream(mContext.openFileInput(DEAL_POOL_FILENAME));
+                if (!mDealPool.read(oin)) {
+                    Log.e("SolitaireView.java", "GetDealPool(): Invalid deal pool version");
+                }
+                oin.close();
+            } catch (FileNotFoundException e) {
+                // Nothing saved yet.
+            } catch (IOException e) {
+                Log.e("SolitaireView.java", "GetDealPool(): IOException");
+            } catch (ClassNotFoundException e) {
+                Log.e("SolitaireView.java", "GetDealPool(): Class not found exception");
+            }
+        }
+        return mDealPool;
+    }
+
+    private void SaveDealPool() {
+        if (mDealPool == null) {
+            return;
+        }
+        try {
+            ObjectOutputStream oout = new ObjectOutputStream(mContext.openFileOutput(DEAL_POOL_FILENAME, 0));
+            mDealPool.write(oout);
+            oout.close();
+        } catch (IOException e) {
+            Log.e("SolitaireView.java", "SaveDealPool(): IOException");
+        }
+    }
+
     public void onResume() {
         mStartTime = SystemClock.uptimeMillis() - mElapsed;
         mRefreshHandler.SetRunning(true);
@@ -470,16 +468,31 @@ public class SolitaireView extends View {
         ChangeViewMode(MODE_WIN);
         mTextView.setVisibility(View.VISIBLE);
         mRules.SetIgnoreEvents(true);
-        mReplay.StartReplay(mMoveHistory, mCardAnchor);
+        mReplay.StartReplay(mMoveHistory, mRules);
     }
 
     public void RestartGame() {
-        mRules.SetIgnoreEvents(true);
-        while (!mMoveHistory.empty()) {
-            Undo();
+        SeekMove(0);
+    }
+
+    // Shows the position after the first moves moves, jumping there from the
+    // nearest checkpoint (see UndoTree.seek). Anything past it can be redone.
+    public void SeekMove(final int moves) {
+        // Not during a win, the replay owns the history then
+        if (mViewMode != MODE_NORMAL) {
+            return;
         }
-        mRules.SetIgnoreEvents(false);
+        boolean oldIgnore = mRules.GetIgnoreEvents();
+        mRules.SetIgnoreEvents(true);
+
+        mMoveCard.Release();
+        mSelectCard.Release();
+
+        mMoveHistory.seek(mRules, moves);
         Refresh();
+        mRules.SetIgnoreEvents(oldIgnore);
+        // Seeking forward redoes moves, which may win
+        mRules.checkWin();
     }
 
     public void DisplayText(final CharSequence text) {
@@ -493,7 +506,7 @@ public class SolitaireView extends View {
         Canvas boardCanvas = mDrawMaster.GetBoardCanvas();
         mDrawMaster.DrawBackground(boardCanvas);
         for (int i = 0; i < mCardAnchor.length; i++) {
-            mCardAnchor[i].Draw(mDrawMaster, boardCanvas);
+            mCardAnchor[i].Draw(mDrawMaster);
         }
     }
 
@@ -525,6 +538,9 @@ public class SolitaireView extends View {
                     mAnimateCard.Draw(mDrawMaster, canvas);
                 }
             case MODE_WIN_STOP:
+                mDrawMaster.DrawShade(canvas);
+                mDrawMaster.DrawProgress(canvas, mReplay.GetPosition(), mReplay.GetLength());
+                break;
             case MODE_TEXT:
                 mDrawMaster.DrawShade(canvas);
                 break;
@@ -538,6 +554,11 @@ public class SolitaireView extends View {
 
     @Override
     public boolean onKeyDown(final int keyCode, final KeyEvent msg) {
+        if (mViewMode == MODE_WIN || mViewMode == MODE_WIN_STOP) {
+            if (ReplayKey(keyCode)) {
+                return true;
+            }
+        }
         switch (keyCode) {
             case KeyEvent.KEYCODE_DPAD_CENTER:
             case KeyEvent.KEYCODE_SEARCH:
@@ -556,6 +577,44 @@ public class SolitaireView extends View {
         return super.onKeyDown(keyCode, msg);
     }
 
+    // Left and right step through the replay, up and down change its speed
+    // and the centre button pauses or carries on.
+    private boolean ReplayKey(final int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.KEYCODE_DPAD_LEFT:
+                mReplay.Step(-1);
+                return true;
+            case KeyEvent.KEYCODE_DPAD_RIGHT:
+                mReplay.Step(1);
+                return true;
+            case KeyEvent.KEYCODE_DPAD_UP:
+                mReplay.Faster();
+                return true;
+            case KeyEvent.KEYCODE_DPAD_DOWN:
+                mReplay.Slower();
+                return true;
+            case KeyEvent.KEYCODE_DPAD_CENTER:
+            case KeyEvent.KEYCODE_SEARCH:
+                if (mReplay.IsPlaying()) {
+                    mReplay.Pause();
+                } else {
+                    ChangeViewMode(MODE_WIN);
+                    mReplay.Play();
+                }
+                return true;
+        }
+        return false;
+    }
+
+    // Dragging across the board after a win scrubs through the replay, the
+    // left edge being the deal and the right edge the winning move.
+    private void ScrubReplay(final float x) {
+        int width = mDrawMaster.GetWidth();
+        if (width > 0) {
+            mReplay.Seek(Math.round(x * mReplay.GetLength() / width));
+        }
+    }
+
     @Override
     public boolean onTouchEvent(final MotionEvent event) {
         boolean ret = false;
@@ -604,12 +663,15 @@ public class SolitaireView extends View {
         }
         mLastPoint.set(boardX, boardY);
 
-        if (!mGameStarted && !mMoveHistory.empty()) {
+        if (!mGameStarted && !mMoveHistory.isEmpty()) {
             mGameStarted = true;
             MarkAttempt();
         }
 
         mRules.HandleEvents();
+        if (event.getAction() == MotionEvent.ACTION_UP) {
+            CheckStuck();
+        }
         return ret;
     }
 
@@ -637,9 +699,12 @@ public class SolitaireView extends View {
 
                     for (int i = 0; i < mCardAnchor.length; i++) {
                         if (mCardAnchor[i] != prevAnchor) {
-                            if (mCardAnchor[i].CanDropCard(mMoveCard, close)) {
-                                mMoveHistory.push(new Move(prevAnchor.GetNumber(), i, count, false, unhide));
-                                mCardAnchor[i].AddMoveCard(mMoveCard);
+                            if (mCardAnchor[i].CanDropCard(mMoveCard.GetTopCard(), count, mMoveCard.getCardX(0), mMoveCard.getCardY(0), close)) {
+                                mMoveHistory.push(Move.pack(prevAnchor.GetNumber(), i, count, false, unhide));
+                                int[] cards = mMoveCard.DumpCards();
+                                for (int j = 0; j < count; j++) {
+                                    mCardAnchor[i].AddCard(cards[j]);
+                                }
                                 if (mViewMode == MODE_MOVE_CARD) {
                                     ChangeViewMode(MODE_NORMAL);
                                 }
@@ -658,7 +723,12 @@ public class SolitaireView extends View {
                         ChangeViewMode(MODE_NORMAL);
                     }
                 } else if (mSpeed.IsFast() && mMoveCard.GetCount() == 1) {
-                    if (!mRules.Fling(mMoveCard)) {
+                    CardAnchor anchor = mMoveCard.GetAnchor();
+                    mAnimateCard.setFlingOrigin(mMoveCard.GetTopCard(), mMoveCard.getCardX(0), mMoveCard.getCardY(0));
+                    int card = mMoveCard.DumpCards(false)[0];
+                    if (!mRules.Fling(anchor, card)) {
+                        mAnimateCard.setFlingOrigin(Card.NONE, 0, 0);
+                        anchor.AddCard(card);
                         ChangeViewMode(MODE_NORMAL);
                     }
                 } else {
@@ -681,11 +751,14 @@ public class SolitaireView extends View {
     public boolean onDown(final float x, final float y) {
         switch (mViewMode) {
             case MODE_NORMAL:
-                Card card = null;
                 for (int i = 0; i < mCardAnchor.length; i++) {
-                    card = mCardAnchor[i].GrabCard(x, y);
-                    if (card != null) {
-                        if (y < card.GetY() + Card.HEIGHT / 4) {
+                    // The card's position has to be read while it's still on the anchor.
+                    int top = mCardAnchor[i].GetCount() - 1;
+                    float cardX = mCardAnchor[i].getCardX(top);
+                    float cardY = mCardAnchor[i].getCardY(top);
+                    int card = mCardAnchor[i].GrabCard(x, y);
+                    if (card != Card.NONE) {
+                        if (y < cardY + Card.HEIGHT / 4) {
                             boolean lastIgnore = mRules.GetIgnoreEvents();
                             mRules.SetIgnoreEvents(true);
                             mCardAnchor[i].AddCard(card);
@@ -698,7 +771,7 @@ public class SolitaireView extends View {
                             card = mCardAnchor[i].PopCard();
                         }
                         mMoveCard.SetAnchor(mCardAnchor[i]);
-                        mMoveCard.AddCard(card);
+                        mMoveCard.AddCard(card, cardX, cardY);
                         ChangeViewMode(MODE_MOVE_CARD);
                         break;
                     }
@@ -707,6 +780,10 @@ public class SolitaireView extends View {
             case MODE_CARD_SELECT:
                 mSelectCard.Tap(x, y);
                 break;
+            case MODE_WIN:
+            case MODE_WIN_STOP:
+                ScrubReplay(x);
+                break;
         }
         return true;
     }
@@ -725,6 +802,10 @@ public class SolitaireView extends View {
                     }
                 }
                 break;
+            case MODE_WIN:
+            case MODE_WIN_STOP:
+                ScrubReplay(x);
+                return true;
             case MODE_MOVE_CARD:
                 final float cdx = mMoveCard.getX() - x;
                 final float cdy = mMoveCard.getY() - y;
@@ -764,13 +845,36 @@ public class SolitaireView extends View {
     public void StopAnimating() {
         if (mViewMode == MODE_ANIMATE) {
             ChangeViewMode(MODE_NORMAL);
+            CheckStuck();
         } else if (mViewMode == MODE_WIN) {
             ChangeViewMode(MODE_WIN_STOP);
         }
     }
 
+    // Offers undo or restart once there's nothing left to do, once for each
+    // position so backing out and coming back doesn't nag.
+    // The cards are all at rest here, so it's also where checkpoints are taken.
+    private void CheckStuck() {
+        if (mViewMode == MODE_NORMAL) {
+            mMoveHistory.checkpoint(mRules);
+        }
+        if (mViewMode != MODE_NORMAL || mRules.getHash() == mStuckHash || !mRules.isStuck()) {
+            return;
+        }
+        mStuckHash = mRules.getHash();
+        new AlertDialog.Builder(mContext).setMessage(R.string.stuck_text).setPositiveButton(R.string.undo, new DialogInterface.OnClickListener() {
+            public void onClick(final DialogInterface dialog, final int which) {
+                Undo();
+            }
+        }).setNeutralButton(R.string.menu_restart, new DialogInterface.OnClickListener() {
+            public void onClick(final DialogInterface dialog, final int which) {
+                RestartGame();
+            }
+        }).setNegativeButton(R.string.cancel, null).show();
+    }
+
     public void Undo() {
-        if (mViewMode != MODE_NORMAL && mViewMode != MODE_WIN) {
+        if (mViewMode != MODE_NORMAL) {
             return;
         }
         boolean oldIgnore = mRules.GetIgnoreEvents();
@@ -779,46 +883,75 @@ public class SolitaireView extends View {
         mMoveCard.Release();
         mSelectCard.Release();
 
-        if (!mMoveHistory.empty()) {
-            Move move = mMoveHistory.pop();
-            int count = 0;
-            int from = move.GetFrom();
-            if (move.GetToBegin() != move.GetToEnd()) {
-                for (int i = move.GetToBegin(); i <= move.GetToEnd(); i++) {
-                    for (int j = 0; j < move.GetCount(); j++) {
-                        mUndoStorage[count++] = mCardAnchor[i].PopCard();
-                    }
-                }
-            } else {
-                for (int i = 0; i < move.GetCount(); i++) {
-                    mUndoStorage[count++] = mCardAnchor[move.GetToBegin()].PopCard();
-                }
-            }
-            if (move.GetUnhide()) {
-                mCardAnchor[from].SetHiddenCount(mCardAnchor[from].GetHiddenCount() + 1);
-            }
-            if (move.GetInvert()) {
-                for (int i = 0; i < count; i++) {
-                    mCardAnchor[from].AddCard(mUndoStorage[i]);
-                }
-            } else {
-                for (int i = count - 1; i >= 0; i--) {
-                    mCardAnchor[from].AddCard(mUndoStorage[i]);
-                }
-            }
-            if (move.GetAddDealCount()) {
-                mRules.AddDealCount();
-            }
-            if (mUndoStorage[0].GetValue() == 1) {
-                for (int i = 0; i < mCardAnchor[from].GetCount(); i++) {
-                    // Card card = mCardAnchor[from].GetCards()[i];
-                }
-            }
+        if (mRules.undo()) {
             Refresh();
         }
         mRules.SetIgnoreEvents(oldIgnore);
     }
 
+    // Plays again the move Undo last took back, down whichever branch was
+    // played (or picked in DisplayBranches) most recently.
+    public void Redo() {
+        if (mViewMode != MODE_NORMAL || !mMoveHistory.canRedo()) {
+            return;
+        }
+        boolean oldIgnore = mRules.GetIgnoreEvents();
+        mRules.SetIgnoreEvents(true);
+
+        mMoveCard.Release();
+        mSelectCard.Release();
+
+        mRules.applyMove(mMoveHistory.getRedo());
+        Refresh();
+        mRules.SetIgnoreEvents(oldIgnore);
+        if (!mRules.checkWin()) {
+            CheckStuck();
+        }
+    }
+
+    // Lists every line of play there's been this game, newest first, to go
+    // back to.
+    public void DisplayBranches() {
+        if (mViewMode != MODE_NORMAL) {
+            return;
+        }
+        final int[] branches = mMoveHistory.getBranches();
+        if (branches.length == 0) {
+            return;
+        }
+        CharSequence[] items = new CharSequence[branches.length];
+        for (int i = 0; i < branches.length; i++) {
+            items[i] = mContext.getString(R.string.branch_item, branches.length - i, mMoveHistory.getDepth(branches[i]));
+        }
+        new AlertDialog.Builder(mContext).setTitle(R.string.menu_branches).setItems(items, new DialogInterface.OnClickListener() {
+            public void onClick(final DialogInterface dialog, final int which) {
+                JumpToBranch(branches[which]);
+            }
+        }).setNegativeButton(R.string.cancel, null).show();
+    }
+
+    // Goes back to where the branch leaves the current line, from the
+    // nearest checkpoint (see UndoTree.seek), then redoes down it to its end.
+    private void JumpToBranch(final int node) {
+        if (mViewMode != MODE_NORMAL) {
+            return;
+        }
+        boolean oldIgnore = mRules.GetIgnoreEvents();
+        mRules.SetIgnoreEvents(true);
+
+        mMoveCard.Release();
+        mSelectCard.Release();
+
+        mMoveHistory.select(node);
+        mMoveHistory.seek(mRules, mMoveHistory.getForkDepth(node));
+        mMoveHistory.seek(mRules, mMoveHistory.getDepth(node));
+        Refresh();
+        mRules.SetIgnoreEvents(oldIgnore);
+        if (!mRules.checkWin()) {
+            CheckStuck();
+        }
+    }
+
     private void MarkAttempt() {
         String gameAttemptString = mRules.GetGameTypeString() + "Attempts";
         int attempts = GetSettings().getInt(gameAttemptString, 0);
@@ -836,6 +969,7 @@ public class SolitaireView extends View {
 
         if (bestTime == -1 || mElapsed < bestTime) {
             editor.putInt(gameTimeString, mElapsed);
+            editor.putLong(gameTimeString + "Seed", mRules.getSeed());
         }
 
         editor.putInt(gameWinString, wins + 1);
@@ -877,12 +1011,11 @@ public class SolitaireView extends View {
         }
         for (int i = 0; i < mCardAnchor.length; i++) {
             for (int j = 0; j < mCardAnchor[i].GetCount(); j++) {
-                Card card = mCardAnchor[i].GetCards()[j];
-                int idx = card.GetSuit() * 13 + card.GetValue() - 1;
+                int idx = mCardAnchor[i].getCard(j);
                 if (cards[idx] >= matchCount) {
                     mTextView.setTextSize(20);
                     mTextView.setGravity(Gravity.CENTER);
-                    DisplayText("Sanity Check Failed\nExtra: " + card.GetValue() + " " + card.GetSuit());
+                    DisplayText("Sanity Check Failed\nExtra: " + Card.GetValue(idx) + " " + Card.GetSuit(idx));
                     return;
                 }
                 cards[idx]++;
@@ -904,6 +1037,23 @@ public class SolitaireView extends View {
     }
 }
 
+// Lets the rules read the shared preferences.
+class SettingsOptions implements GameOptions {
+    private SharedPreferences mSettings;
+
+    public SettingsOptions(final SharedPreferences settings) {
+        mSettings = settings;
+    }
+
+    public boolean getBoolean(final String key, final boolean defValue) {
+        return mSettings.getBoolean(key, defValue);
+    }
+
+    public int getInt(final String key, final int defValue) {
+        return mSettings.getInt(key, defValue);
+    }
+}
+
 class RefreshHandler implements Runnable {
     public static final int NO_REFRESH = 1;
     public static final int SINGLE_REFRESH = 2;
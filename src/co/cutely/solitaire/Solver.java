@@ -0,0 +1,445 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Base for the solvers. Each one plays on its own headless copy of the game,
+// applying moves with Rules.applyMove and taking them back with Rules.undo,
+// so the moves it finds are ordinary Moves that replay through the same code
+// (and the same history) as the game itself.
+abstract class Solver {
+
+    public static final int SOLVED = 1;
+    // Every position reachable with the moves the solver tries was searched,
+    // and the only moves left out were ones that can't help.
+    public static final int NO_SOLUTION = 2;
+    // Ran out of nodes, time or memory before finding an answer, or searched
+    // everything but had left out moves that might have won (see pruned).
+    public static final int GAVE_UP = 3;
+
+    public static final long DEFAULT_MEMORY_LIMIT = 16 * 1024 * 1024;
+    // Roughly what a queued position costs on top of its board.
+    private static final int NODE_SIZE = 48;
+    private static final int MOVE_SIZE = 4;
+
+    protected Rules mRules;
+    protected CardAnchor[] mAnchor;
+    protected MoveLog mHistory;
+    // The top value on the foundations by suit, see readFoundations.
+    protected int[] mFoundation;
+
+    private LongHashSet mSeen;
+    // Set when the solver is one of several searching the same game.
+    private ConcurrentLongHashSet mSharedSeen;
+    private volatile List<Move> mSolution;
+    private long[] mSolutionHashes;
+    private long mNodeCount;
+    private long mMaxNodes;
+    private long mDeadline;
+    private boolean mGaveUp;
+    private boolean mPruned;
+    private long mMemoryLimit;
+    private volatile boolean mCancelled;
+
+    // For getBestMove, which can be asked from another thread mid search.
+    private volatile Node mBest;
+    private volatile Move mFirstMove;
+
+    // Best first search
+    private List<Move> mMoves;
+    private List<Node> mChildren;
+    private int mOrder;
+
+    static class Node {
+        byte[] mBoard;
+        Node mParent;
+        // Packed, see Move.pack
+        int[] mMoves;
+        int mScore;
+        int mOrder;
+    }
+
+    // Lowest score first, and the newest of equal scores, which keeps the
+    // search going down one line instead of widening out.
+    static final Comparator<Node> BEST_FIRST = new Comparator<Node>() {
+        public int compare(final Node a, final Node b) {
+            if (a.mScore != b.mScore) {
+                return a.mScore < b.mScore ? -1 : 1;
+            }
+            return a.mOrder > b.mOrder ? -1 : (a.mOrder == b.mOrder ? 0 : 1);
+        }
+    };
+
+    protected Solver(final GameState state, final GameOptions options) {
+        mHistory = new MoveLog();
+        mRules = Rules.CreateRules(state.getType(), state, options, null, mHistory, null);
+        mRules.SetIgnoreEvents(true);
+        mAnchor = mRules.GetAnchorArray();
+        mSeen = new LongHashSet();
+        mFoundation = new int[4];
+        mMemoryLimit = DEFAULT_MEMORY_LIMIT;
+        mMoves = new ArrayList<Move>();
+        mChildren = new ArrayList<Node>();
+    }
+
+    // The solver for whichever game state is from.
+    public static Solver create(final GameState state, final GameOptions options) {
+        switch (state.getType()) {
+            case Rules.SOLITAIRE:
+                return new KlondikeSolver(state, options);
+            case Rules.SPIDER:
+                return new SpiderSolver(state, options);
+            case Rules.FREECELL:
+                return new FreecellSolver(state, options);
+            case Rules.FORTYTHIEVES:
+                return new FortyThievesSolver(state, options);
+        }
+        return null;
+    }
+
+    // Only the best first search keeps positions around, this caps them.
+    public void setMemoryLimit(final long bytes) {
+        mMemoryLimit = bytes;
+    }
+
+    public long getMemoryLimit() {
+        return mMemoryLimit;
+    }
+
+    // Remember positions in seen instead of in a set of our own, see
+    // ParallelSolver.
+    void setSharedSeen(final ConcurrentLongHashSet seen) {
+        mSharedSeen = seen;
+    }
+
+    // Searches until a solution is found or one of the budgets runs out.
+    public int solve(final long maxNodes, final long maxMillis) {
+        mSeen.clear();
+        mSolution = null;
+        mNodeCount = 0;
+        mMaxNodes = maxNodes;
+        mDeadline = System.currentTimeMillis() + maxMillis;
+        mGaveUp = false;
+        mPruned = false;
+        mBest = null;
+        mMoves.clear();
+        generateMoves(mMoves);
+        mFirstMove = mMoves.isEmpty() ? null : mMoves.get(0);
+
+        int result;
+        if (search()) {
+            mSolutionHashes = new long[mHistory.size()];
+            List<Move> solution = new ArrayList<Move>(mHistory.size());
+            for (int i = 0; i < mHistory.size(); i++) {
+                solution.add(Move.unpack(mHistory.get(i)));
+            }
+            for (int i = mSolutionHashes.length - 1; i >= 0; i--) {
+                mSolutionHashes[i] = mRules.getHash();
+                mRules.undo();
+            }
+            mSolution = solution;
+            result = SOLVED;
+        } else {
+            result = mGaveUp || mPruned ? GAVE_UP : NO_SOLUTION;
+        }
+        undoAll();
+        return result;
+    }
+
+    // The moves from the starting position to the win, in history order.
+    public List<Move> getSolution() {
+        return mSolution;
+    }
+
+    // The hash (see Rules.getHash) of the position after each move of the
+    // solution, so a game can tell how far along it it's got.
+    public long[] getSolutionHashes() {
+        return mSolution != null ? mSolutionHashes : null;
+    }
+
+    public long getNodeCount() {
+        return mNodeCount;
+    }
+
+    // The move to make now: the first move of the solution once there is
+    // one, until then the first move towards the best position the search
+    // has got to, or failing that the first move generateMoves came up
+    // with. Safe to call from another thread while solve() runs.
+    public Move getBestMove() {
+        List<Move> solution = mSolution;
+        if (solution != null) {
+            return solution.isEmpty() ? null : solution.get(0);
+        }
+        Node best = mBest;
+        if (best != null) {
+            List<Move> line = lineTo(best);
+            if (!line.isEmpty()) {
+                return line.get(0);
+            }
+        }
+        return mFirstMove;
+    }
+
+    // Stops the search from another thread, solve() returns GAVE_UP soon
+    // after. A cancelled solver stays that way.
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    // Adds the moves worth trying from the current position, best first. If
+    // one move is certainly right, it can be the only one added.
+    protected abstract void generateMoves(List<Move> moves);
+
+    // Looks for a win from the current position. If there is one the moves
+    // that get there have to be left on the history.
+    protected boolean search() {
+        return depthFirst();
+    }
+
+    // For the best first search (and getBestMove while a depth first one is
+    // running), how far from done the position looks. Only a won game may
+    // score 0.
+    protected int score() {
+        return mRules.isWon() ? 0 : 1;
+    }
+
+    // Moves that should always be made as soon as they can be, played by the
+    // best first search after every move it tries.
+    protected void playForcedMoves() {
+    }
+
+    // The hash positions are told apart by, normally just the board's.
+    protected long positionHash() {
+        return mRules.getHash();
+    }
+
+    // Returns false if the position was already seen.
+    protected boolean markSeen(final long hash) {
+        return mSharedSeen != null ? mSharedSeen.add(hash) : mSeen.add(hash);
+    }
+
+    // Counts one more node, returns false (and gives up) once the node or
+    // time budget is spent.
+    protected boolean countNode() {
+        if (mCancelled || ++mNodeCount > mMaxNodes || ((mNodeCount & 0xff) == 0 && System.currentTimeMillis() > mDeadline)) {
+            mGaveUp = true;
+        }
+        return !mGaveUp;
+    }
+
+    protected void giveUp() {
+        mGaveUp = true;
+    }
+
+    protected boolean hasGivenUp() {
+        return mGaveUp;
+    }
+
+    // For generateMoves to say it left out a move that might have led to a
+    // win, only to keep the search small. Running out of positions then
+    // doesn't prove anything, and solve() gives up rather than say there's
+    // no solution.
+    protected void pruned() {
+        mPruned = true;
+    }
+
+    boolean isPruned() {
+        return mPruned;
+    }
+
+    void clearPruned() {
+        mPruned = false;
+    }
+
+    // Fills in mFoundation from the four foundations starting at first.
+    protected void readFoundations(final int first) {
+        for (int i = 0; i < 4; i++) {
+            mFoundation[i] = 0;
+        }
+        for (int i = first; i < first + 4; i++) {
+            int top = mAnchor[i].getTopCard();
+            if (top != Card.NONE) {
+                mFoundation[Card.GetSuit(top)] = Card.GetValue(top);
+            }
+        }
+    }
+
+    // The foundation card can go to, or -1. Needs mFoundation to be current.
+    protected int findSink(final int card, final int first) {
+        int value = Card.GetValue(card);
+        if (mFoundation[Card.GetSuit(card)] != value - 1) {
+            return -1;
+        }
+        for (int i = first; i < first + 4; i++) {
+            int top = mAnchor[i].getTopCard();
+            if (value == 1 ? top == Card.NONE : top == card - 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Nothing could ever want to go on card once both the next lower cards of
+    // the other colour are up, so playing it can't hurt. None of the solvers
+    // take cards back off the foundations.
+    protected boolean isSafe(final int card) {
+        int value = Card.GetValue(card);
+        int suit = Card.GetSuit(card);
+        return value <= 2 || (mFoundation[(suit + 1) & 3] >= value - 1 && mFoundation[(suit + 3) & 3] >= value - 1);
+    }
+
+    // Positions waiting to be looked at are kept packed (see Rules.packBoard)
+    // in a priority queue ordered by score, until they'd take up more than
+    // the memory limit.
+    protected boolean bestFirst() {
+        byte[] start = mRules.packBoard();
+        PriorityQueue<Node> open = new PriorityQueue<Node>(1024, BEST_FIRST);
+        long memory = 0;
+        mOrder = 0;
+        open.add(startNode());
+
+        Node won = null;
+        while (!open.isEmpty() && countNode()) {
+            Node node = open.poll();
+            if (node.mScore == 0) {
+                won = node;
+                break;
+            }
+            mChildren.clear();
+            memory += expand(node, mChildren);
+            open.addAll(mChildren);
+            for (int i = 0; i < mChildren.size(); i++) {
+                Node child = mChildren.get(i);
+                if (mBest == null || child.mScore < mBest.mScore) {
+                    mBest = child;
+                }
+            }
+            if (memory > mMemoryLimit) {
+                giveUp();
+            }
+        }
+
+        mRules.unpackBoard(start);
+        if (won == null) {
+            return false;
+        }
+        // Play the winning line from the start so it ends up on the history.
+        List<Move> line = lineTo(won);
+        for (int i = 0; i < line.size(); i++) {
+            mRules.applyMove(line.get(i));
+        }
+        return true;
+    }
+
+    // The node the search starts from, the current position after any
+    // forced moves. The board is left as it was.
+    Node startNode() {
+        playForcedMoves();
+        markSeen(positionHash());
+        Node node = makeNode(null);
+        undoAll();
+        return node;
+    }
+
+    // Adds a node to children for every position one move on from node that
+    // hasn't been seen yet, and returns roughly how many bytes they take.
+    // The board is left on node's position.
+    long expand(final Node node, final List<Node> children) {
+        long memory = 0;
+        mRules.unpackBoard(node.mBoard);
+        mMoves.clear();
+        generateMoves(mMoves);
+        for (int i = 0; i < mMoves.size(); i++) {
+            mRules.applyMove(mMoves.get(i));
+            playForcedMoves();
+            if (markSeen(positionHash())) {
+                Node child = makeNode(node);
+                memory += child.mBoard.length + NODE_SIZE + child.mMoves.length * MOVE_SIZE;
+                children.add(child);
+            }
+            undoAll();
+        }
+        return memory;
+    }
+
+    // Every move from the start to node.
+    static List<Move> lineTo(final Node node) {
+        List<int[]> path = new ArrayList<int[]>();
+        for (Node n = node; n != null; n = n.mParent) {
+            path.add(n.mMoves);
+        }
+        List<Move> line = new ArrayList<Move>();
+        for (int i = path.size() - 1; i >= 0; i--) {
+            int[] moves = path.get(i);
+            for (int j = 0; j < moves.length; j++) {
+                line.add(Move.unpack(moves[j]));
+            }
+        }
+        return line;
+    }
+
+    // The current position, reached from parent by everything on the history.
+    private Node makeNode(final Node parent) {
+        Node node = new Node();
+        node.mBoard = mRules.packBoard();
+        node.mParent = parent;
+        node.mMoves = mHistory.toArray();
+        node.mScore = score();
+        node.mOrder = mOrder++;
+        return node;
+    }
+
+    private void undoAll() {
+        while (mRules.undo()) {
+        }
+    }
+
+    // Plain depth first search, skipping any position that's been seen before.
+    // The best scoring position so far is kept for getBestMove, as the line
+    // from the start (there are no nodes to hang it off).
+    private boolean depthFirst() {
+        if (mRules.isWon()) {
+            return true;
+        }
+        if (!markSeen(positionHash()) || !countNode()) {
+            return false;
+        }
+        int score = score();
+        if (mBest == null || score < mBest.mScore) {
+            mBest = makeNode(null);
+        }
+
+        List<Move> moves = new ArrayList<Move>();
+        generateMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            mRules.applyMove(moves.get(i));
+            if (depthFirst()) {
+                return true;
+            }
+            mRules.undo();
+            if (mGaveUp) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
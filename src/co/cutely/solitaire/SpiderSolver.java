@@ -0,0 +1,192 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.util.List;
+
+// Best first solver for Spider with one, two or four suits (whichever the
+// deal was made with, see SpiderSuits). A run is moved whole onto any card,
+// or split onto its own suit or into an empty column, and a finished run goes
+// off to anchor 11 as soon as it's there, the same as Spider.EventProcess
+// does. Like the other solvers it knows what's under the face down cards.
+class SpiderSolver extends Solver {
+
+    // Anchor layout from Spider.Init
+    private static final int STACK_COUNT = 10;
+    private static final int STOCK = 10;
+    private static final int DONE = 11;
+
+    // For each card, a bit for every column whose run on top starts with it.
+    private int[] mRunBase;
+
+    public SpiderSolver(final GameState state, final GameOptions options) {
+        super(state, options);
+        mRunBase = new int[52];
+    }
+
+    @Override
+    protected boolean search() {
+        return bestFirst();
+    }
+
+    // Takes off any finished King to Ace run.
+    @Override
+    protected void playForcedMoves() {
+        for (int i = 0; i < STACK_COUNT; i++) {
+            CardAnchor anchor = mAnchor[i];
+            if (anchor.isRunDone()) {
+                int left = anchor.GetCount() - 13;
+                mRules.applyMove(new Move(i, DONE, 13, true, left > 0 && left == anchor.GetHiddenCount()));
+            }
+        }
+    }
+
+    // Lots for every face down card and every card that's out of sequence,
+    // less for one that's in sequence but off suit, and a bonus for every
+    // empty column and every finished run.
+    @Override
+    protected int score() {
+        int done = mAnchor[DONE].GetCount();
+        if (done == 104) {
+            return 0;
+        }
+        int score = (104 - done) * 2;
+        for (int i = 0; i < STACK_COUNT; i++) {
+            CardAnchor anchor = mAnchor[i];
+            int count = anchor.GetCount();
+            if (count == 0) {
+                score -= 8;
+                continue;
+            }
+            int hidden = anchor.GetHiddenCount();
+            score += hidden * 6;
+            for (int j = hidden + 1; j < count; j++) {
+                int below = anchor.getCard(j - 1);
+                int card = anchor.getCard(j);
+                if (Card.GetValue(card) != Card.GetValue(below) - 1) {
+                    score += 4;
+                } else if (card != below - 1) {
+                    score += 1;
+                }
+            }
+        }
+        return score < 1 ? 1 : score;
+    }
+
+    // Columns can be swapped around without changing anything, so the hash
+    // ignores which column is which.
+    @Override
+    protected long positionHash() {
+        long hash = Zobrist.hidden(STOCK, mAnchor[STOCK].GetCount()) ^ Zobrist.hidden(DONE, mAnchor[DONE].GetCount());
+        for (int i = 0; i < STACK_COUNT; i++) {
+            CardAnchor anchor = mAnchor[i];
+            long column = Zobrist.hidden(0, anchor.GetHiddenCount());
+            for (int j = 0; j < anchor.GetCount(); j++) {
+                column ^= Zobrist.card(0, j, anchor.getCard(j));
+            }
+            hash += Zobrist.mix(column);
+        }
+        return hash;
+    }
+
+    // A whole run can go onto any card one higher, or into an empty column.
+    // Part of a run can go onto its own suit or into an empty column, but
+    // only when that leaves room for a longer run (see isWorthSplitting),
+    // otherwise it just swaps cards around. Those splits, splits onto another
+    // suit, and a run already on the next card up going onto another one of
+    // those are left out to keep the search down on a 104 card board, so the
+    // search says it pruned.
+    @Override
+    protected void generateMoves(final List<Move> moves) {
+        int firstEmpty = -1;
+        for (int i = 0; i < STACK_COUNT && firstEmpty == -1; i++) {
+            if (mAnchor[i].GetCount() == 0) {
+                firstEmpty = i;
+            }
+        }
+
+        for (int i = 0; i < mRunBase.length; i++) {
+            mRunBase[i] = 0;
+        }
+        for (int i = 0; i < STACK_COUNT; i++) {
+            CardAnchor anchor = mAnchor[i];
+            if (anchor.GetCount() > 0) {
+                mRunBase[anchor.getCard(anchor.GetCount() - anchor.GetMovableCount())] |= 1 << i;
+            }
+        }
+
+        for (int from = 0; from < STACK_COUNT; from++) {
+            CardAnchor anchor = mAnchor[from];
+            int run = anchor.GetMovableCount();
+            int count = anchor.GetCount();
+            int hidden = anchor.GetHiddenCount();
+            for (int size = run; size > 0; size--) {
+                int idx = count - size;
+                int card = anchor.getCard(idx);
+                // Already sitting on the next card up, its own suit whenever
+                // this is only part of the run.
+                boolean placed = idx > hidden && Card.GetValue(anchor.getCard(idx - 1)) == Card.GetValue(card) + 1;
+                boolean unhide = idx > 0 && idx == hidden;
+                int twins = mRunBase[card] & ~(1 << from);
+                for (int to = 0; to < STACK_COUNT; to++) {
+                    if (to == from) {
+                        continue;
+                    }
+                    int top = mAnchor[to].getTopCard();
+                    if (top == Card.NONE) {
+                        // One empty column is as good as another, and moving
+                        // a whole column into one gets nowhere.
+                        if (to != firstEmpty || idx == 0) {
+                            continue;
+                        }
+                    } else if (Card.GetValue(top) != Card.GetValue(card) + 1) {
+                        continue;
+                    } else if (top != card + 1 && placed) {
+                        pruned();
+                        continue;
+                    }
+                    if (size < run && !isWorthSplitting(twins & ~(1 << to), size, run - size, to)) {
+                        pruned();
+                        continue;
+                    }
+                    moves.add(new Move(from, to, size, false, unhide));
+                }
+            }
+        }
+
+        // Deal a row, the same move Spider.EventProcess records.
+        int stock = mAnchor[STOCK].GetCount();
+        if (stock > 0) {
+            int count = stock > STACK_COUNT ? STACK_COUNT : stock;
+            moves.add(new Move(STOCK, 0, count - 1, 1, false, false));
+        }
+    }
+
+    // Whether moving size cards off the top of a run to column to leaves the
+    // left cards behind for a run on one of the twins columns (starting with
+    // the same card as the part moved) to come onto, making a run longer than
+    // this one was. Not if to's run is as long as what's left, then the twin
+    // might as well go there.
+    private boolean isWorthSplitting(final int twins, final int size, final int left, final int to) {
+        if (mAnchor[to].GetMovableCount() >= left) {
+            return false;
+        }
+        for (int i = 0; i < STACK_COUNT; i++) {
+            if ((twins & 1 << i) != 0 && mAnchor[i].GetMovableCount() > size) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -39,6 +39,7 @@ public class Stats {
         int attempts = settings.getInt(gameAttemptString, 0);
         int wins = settings.getInt(gameWinString, 0);
         int bestTime = settings.getInt(gameTimeString, -1);
+        long bestTimeSeed = settings.getLong(gameTimeString + "Seed", 0);
         int highScore = settings.getInt(gameScoreString, -52);
         float ratio = 0;
         if (attempts > 0) {
@@ -55,12 +56,19 @@ public class Stats {
             int seconds = (bestTime / 1000) % 60;
             int minutes = bestTime / 60000;
             tv = (TextView) solitaire.findViewById(R.id.text_best_time);
-            tv.setText("Fastest Time: " + String.format("%d:%02d", minutes, seconds));
+            tv.setText("Fastest Time: " + String.format("%d:%02d", minutes, seconds) + " (Deal " + Deck.seedToString(bestTimeSeed) + ")");
         }
         if (rules.HasScore()) {
             tv = (TextView) solitaire.findViewById(R.id.text_high_score);
             tv.setText("High Score: " + highScore);
         }
+        tv = (TextView) solitaire.findViewById(R.id.text_deal);
+        if (rules.GetType() == Rules.FREECELL && settings.getBoolean("FreecellMSDeals", false)) {
+            // Microsoft deal numbers are better known in decimal
+            tv.setText("This Deal: #" + rules.getSeed());
+        } else {
+            tv.setText("This Deal: " + Deck.seedToString(rules.getSeed()));
+        }
 
         final Button accept = (Button) solitaire.findViewById(R.id.button_accept);
         accept.setOnClickListener(new View.OnClickListener() {
@@ -0,0 +1,345 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs the solver over a range of deals from the command line, for finding
+// out how many deals of a game can be won and how hard they are to solve:
+//
+//   java co.cutely.solitaire.Sweep <game> <first seed> <count> [name=value ...]
+//       [-threads n] [-parallel] [-nodes n] [-millis n] [-out file] [-records file]
+//
+// game is klondike, spider, freecell or fortythieves, a seed is a number (or
+// 0x and the hex that Stats shows), and name=value sets a GameOptions value,
+// so SpiderSuits=1 or FreecellMSDeals=true. Every deal gets a line of CSV as
+// soon as it's solved, which means lines come in whatever order the threads
+// finish them, and nothing is kept per deal so the run can be as long as
+// anyone likes. The totals and histograms go to stderr at the end. With
+// -records, every deal that's won is also written out as a GameRecord of the
+// solution.
+//
+// With -parallel the deals are solved one at a time instead, each by a
+// ParallelSolver with the threads as its workers, and how many positions each
+// worker got through, and how fast, goes to stderr after every deal.
+public class Sweep {
+
+    private static final String HEADER = "seed,result,moves,nodes,millis";
+    // By Solver result
+    private static final String[] RESULT = { "", "won", "lost", "unknown" };
+
+    // Buckets by powers of two: 0, 1, 2-3, 4-7, ...
+    static class Histogram {
+        private final String mName;
+        private final long[] mBuckets = new long[64];
+
+        public Histogram(final String name) {
+            mName = name;
+        }
+
+        public void add(final long value) {
+            mBuckets[64 - Long.numberOfLeadingZeros(value)]++;
+        }
+
+        public void addAll(final Histogram other) {
+            for (int i = 0; i < mBuckets.length; i++) {
+                mBuckets[i] += other.mBuckets[i];
+            }
+        }
+
+        public void print(final Writer out) throws IOException {
+            long most = 0;
+            int first = -1;
+            int last = -1;
+            for (int i = 0; i < mBuckets.length; i++) {
+                if (mBuckets[i] > 0) {
+                    most = Math.max(most, mBuckets[i]);
+                    first = first < 0 ? i : first;
+                    last = i;
+                }
+            }
+            out.write(mName + "\n");
+            for (int i = Math.max(first, 0); i <= last; i++) {
+                long low = i == 0 ? 0 : 1L << (i - 1);
+                long high = i == 0 ? 0 : (1L << i) - 1;
+                StringBuilder bar = new StringBuilder();
+                for (long j = mBuckets[i] * 50 / most; j > 0; j--) {
+                    bar.append('#');
+                }
+                out.write(String.format("%12d-%-12d %10d %s\n", low, high, mBuckets[i], bar));
+            }
+        }
+    }
+
+    private class Worker extends Thread {
+        private long[] mResults = new long[4];
+        private Histogram mMoves = new Histogram("Moves (solved deals)");
+        private Histogram mNodes = new Histogram("Nodes");
+        private Histogram mMillis = new Histogram("Milliseconds");
+        private IOException mError;
+        private GameRecord mRecord = new GameRecord();
+
+        @Override
+        public void run() {
+            StringBuilder line = new StringBuilder();
+            long i;
+            while (mError == null && (i = mNext.getAndIncrement()) < mCount) {
+                long seed = mFirst + i;
+                long start = System.nanoTime();
+                Rules rules = Rules.CreateRules(mType, seed, mOptions, null, new MoveLog(), null);
+                GameState deal = GameState.capture(rules);
+                int result;
+                long nodeCount;
+                List<Move> solution;
+                ParallelSolver parallel = null;
+                if (mWorkers > 0) {
+                    parallel = new ParallelSolver(deal, mOptions, mWorkers);
+                    result = parallel.solve(mMaxNodes, mMaxMillis);
+                    nodeCount = parallel.getNodeCount();
+                    solution = parallel.getSolution();
+                } else {
+                    Solver solver = Solver.create(deal, mOptions);
+                    result = solver.solve(mMaxNodes, mMaxMillis);
+                    nodeCount = solver.getNodeCount();
+                    solution = solver.getSolution();
+                }
+                long millis = (System.nanoTime() - start) / 1000000;
+                int moves = result == Solver.SOLVED ? solution.size() : 0;
+
+                mResults[result]++;
+                if (result == Solver.SOLVED) {
+                    mMoves.add(moves);
+                }
+                mNodes.add(nodeCount);
+                mMillis.add(millis);
+
+                line.setLength(0);
+                line.append(rules.getSeed()).append(',').append(RESULT[result]).append(',').append(moves).append(',').append(nodeCount)
+                        .append(',').append(millis).append('\n');
+                try {
+                    synchronized (mOut) {
+                        mOut.write(line.toString());
+                    }
+                    if (parallel != null) {
+                        writeRates(rules.getSeed(), parallel);
+                    }
+                    if (mRecords != null && result == Solver.SOLVED) {
+                        // Play it out for the hash it ends on
+                        for (int j = 0; j < moves; j++) {
+                            rules.applyMove(solution.get(j));
+                        }
+                        mRecord.set(mType, mOptions, rules.getSeed(), solution, rules.getHash());
+                        synchronized (mRecords) {
+                            mRecords.write(mRecord);
+                        }
+                    }
+                } catch (IOException e) {
+                    mError = e;
+                }
+            }
+        }
+    }
+
+    private int mType;
+    private GameOptions mOptions;
+    private long mFirst;
+    private long mCount;
+    private long mMaxNodes = 200000;
+    private long mMaxMillis = 10000;
+    private Writer mOut;
+    private GameRecord.Writer mRecords;
+    // Workers for each ParallelSolver, 0 for a plain Solver per deal
+    private int mWorkers;
+    private Writer mSummary;
+    private AtomicLong mNext;
+
+    public Sweep(final int type, final GameOptions options, final long first, final long count, final Writer out) {
+        mType = type;
+        mOptions = options;
+        mFirst = first;
+        mCount = count;
+        mOut = out;
+    }
+
+    public void setRecords(final GameRecord.Writer records) {
+        mRecords = records;
+    }
+
+    public void setBudget(final long maxNodes, final long maxMillis) {
+        mMaxNodes = maxNodes;
+        mMaxMillis = maxMillis;
+    }
+
+    // Solves every deal on threads threads, then writes the summary to
+    // summary. With parallel, one deal at a time with threads workers.
+    public void run(final int threads, final boolean parallel, final Writer summary) throws IOException {
+        mNext = new AtomicLong();
+        mWorkers = parallel ? threads : 0;
+        mSummary = summary;
+        mOut.write(HEADER + "\n");
+        Worker[] workers = new Worker[parallel ? 1 : threads];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker();
+            workers[i].start();
+        }
+
+        long[] results = new long[4];
+        Histogram moves = new Histogram("Moves (solved deals)");
+        Histogram nodes = new Histogram("Nodes");
+        Histogram millis = new Histogram("Milliseconds");
+        for (int i = 0; i < workers.length; i++) {
+            boolean joined = false;
+            while (!joined) {
+                try {
+                    workers[i].join();
+                    joined = true;
+                } catch (InterruptedException e) {
+                    // Carry on waiting, the workers don't stop part way.
+                }
+            }
+            if (workers[i].mError != null) {
+                throw workers[i].mError;
+            }
+            for (int j = 0; j < results.length; j++) {
+                results[j] += workers[i].mResults[j];
+            }
+            moves.addAll(workers[i].mMoves);
+            nodes.addAll(workers[i].mNodes);
+            millis.addAll(workers[i].mMillis);
+        }
+        mOut.flush();
+        if (mRecords != null) {
+            mRecords.flush();
+        }
+
+        long total = results[Solver.SOLVED] + results[Solver.NO_SOLUTION] + results[Solver.GAVE_UP];
+        summary.write(String.format("%d deals: %d won (%.2f%%), %d lost, %d unknown\n\n", total, results[Solver.SOLVED],
+                total == 0 ? 0.0 : results[Solver.SOLVED] * 100.0 / total, results[Solver.NO_SOLUTION], results[Solver.GAVE_UP]));
+        moves.print(summary);
+        summary.write("\n");
+        nodes.print(summary);
+        summary.write("\n");
+        millis.print(summary);
+        summary.flush();
+    }
+
+    private void writeRates(final long seed, final ParallelSolver solver) throws IOException {
+        StringBuilder rates = new StringBuilder();
+        rates.append(seed).append(':');
+        for (int i = 0; i < solver.getWorkerCount(); i++) {
+            rates.append(String.format(" %d nodes %d/s", solver.getWorkerNodeCount(i), solver.getWorkerNodesPerSecond(i)));
+            rates.append(i + 1 < solver.getWorkerCount() ? ',' : '\n');
+        }
+        synchronized (mSummary) {
+            mSummary.write(rates.toString());
+            mSummary.flush();
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 3) {
+            usage();
+        }
+        int type = parseType(args[0]);
+        long first = parseSeed(args[1]);
+        long count = Long.parseLong(args[2]);
+
+        DefaultOptions options = new DefaultOptions();
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean parallel = false;
+        long maxNodes = 200000;
+        long maxMillis = 10000;
+        String out = null;
+        String records = null;
+        for (int i = 3; i < args.length; i++) {
+            String arg = args[i];
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                String name = arg.substring(0, equals);
+                String value = arg.substring(equals + 1);
+                if (value.equals("true") || value.equals("false")) {
+                    options.putBoolean(name, Boolean.parseBoolean(value));
+                } else {
+                    options.putInt(name, Integer.parseInt(value));
+                }
+            } else if (i + 1 < args.length && arg.equals("-threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-parallel")) {
+                parallel = true;
+            } else if (i + 1 < args.length && arg.equals("-nodes")) {
+                maxNodes = Long.parseLong(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("-millis")) {
+                maxMillis = Long.parseLong(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("-out")) {
+                out = args[++i];
+            } else if (i + 1 < args.length && arg.equals("-records")) {
+                records = args[++i];
+            } else {
+                usage();
+            }
+        }
+
+        Writer writer = new BufferedWriter(out == null ? new OutputStreamWriter(System.out) : new FileWriter(out), 1 << 16);
+        Sweep sweep = new Sweep(type, options, first, count, writer);
+        sweep.setBudget(maxNodes, maxMillis);
+        GameRecord.Writer recordWriter = null;
+        if (records != null) {
+            recordWriter = new GameRecord.Writer(new BufferedOutputStream(new FileOutputStream(records), 1 << 16));
+            sweep.setRecords(recordWriter);
+        }
+        try {
+            sweep.run(threads < 1 ? 1 : threads, parallel, new OutputStreamWriter(System.err));
+        } finally {
+            writer.close();
+            if (recordWriter != null) {
+                recordWriter.close();
+            }
+        }
+    }
+
+    private static int parseType(final String name) {
+        if (name.equals("klondike")) {
+            return Rules.SOLITAIRE;
+        } else if (name.equals("spider")) {
+            return Rules.SPIDER;
+        } else if (name.equals("freecell")) {
+            return Rules.FREECELL;
+        } else if (name.equals("fortythieves")) {
+            return Rules.FORTYTHIEVES;
+        }
+        usage();
+        return 0;
+    }
+
+    private static long parseSeed(final String seed) {
+        if (seed.startsWith("0x")) {
+            return Deck.parseSeed(seed.substring(2));
+        }
+        return Long.parseLong(seed);
+    }
+
+    private static void usage() {
+        System.err.println("usage: Sweep klondike|spider|freecell|fortythieves <first seed> <count> [name=value ...]");
+        System.err.println("             [-threads n] [-parallel] [-nodes n] [-millis n] [-out file] [-records file]");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,345 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+// A move history that remembers everything that was undone. Every position
+// the game has been in is a node, with the moves out of it as children, so
+// the history itself (what MoveLog holds) is just the path from the start to
+// the current node. Undoing steps back up the path and keeps the node, redo
+// goes back down to whichever child was visited last, and playing a move
+// that was played from here before goes down the same node again instead of
+// making a copy. However many times the same moves get undone and redone,
+// the tree stays the same size.
+//
+// Nodes live in parallel int arrays, with node 0 the start of the game.
+//
+// Some nodes also keep a checkpoint, the whole board from Rules.packBoard:
+// the start of the game, and then a node whenever it's CHECKPOINT_EVERY
+// moves on from the last checkpoint above it. seek() gets to any point in the
+// history by putting back the nearest checkpoint and replaying what's left,
+// rather than undoing move by move from the end.
+class UndoTree extends MoveLog {
+
+    public static final int CHECKPOINT_EVERY = 16;
+
+    private static final int NONE = -1;
+
+    private int[] mParent;
+    private int[] mMove;
+    private int[] mFirstChild;
+    private int[] mNextSibling;
+    // The child redo goes to
+    private int[] mLastChild;
+    // What the parent's mLastChild was before we last went down here, so a
+    // discarded move can put it back.
+    private int[] mParentLast;
+    // Whether the last push down to the node made it, rather than going
+    // back down a node that was already there.
+    private boolean[] mMade;
+    private int[] mDepth;
+    private byte[][] mBoard;
+    private int mCount;
+    private int mCurrent;
+
+    public UndoTree() {
+        mParent = new int[64];
+        mMove = new int[64];
+        mFirstChild = new int[64];
+        mNextSibling = new int[64];
+        mLastChild = new int[64];
+        mParentLast = new int[64];
+        mMade = new boolean[64];
+        mDepth = new int[64];
+        mBoard = new byte[64][];
+        reset();
+    }
+
+    private void reset() {
+        mCount = 0;
+        mCurrent = newNode(NONE, 0);
+    }
+
+    @Override
+    public void push(final int packed) {
+        super.push(packed);
+        int child = mFirstChild[mCurrent];
+        while (child != NONE && mMove[child] != packed) {
+            child = mNextSibling[child];
+        }
+        if (child == NONE) {
+            child = newNode(mCurrent, packed);
+        } else {
+            mMade[child] = false;
+        }
+        mParentLast[child] = mLastChild[mCurrent];
+        mLastChild[mCurrent] = child;
+        mCurrent = child;
+    }
+
+    @Override
+    public int pop() {
+        int packed = super.pop();
+        mCurrent = mParent[mCurrent];
+        return packed;
+    }
+
+    // Steps back as pop() does, but as if the move had never been made: redo
+    // goes where it did before, and if the move made a new node, the node is
+    // gone again. A node that was there before the move stays.
+    @Override
+    public int discard() {
+        int packed = super.pop();
+        int node = mCurrent;
+        mCurrent = mParent[node];
+        mLastChild[mCurrent] = mParentLast[node];
+        if (mMade[node] && node == mCount - 1 && mFirstChild[node] == NONE) {
+            // The newest node is always the first child.
+            mFirstChild[mCurrent] = mNextSibling[node];
+            mBoard[node] = null;
+            mCount--;
+        }
+        return packed;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        reset();
+    }
+
+    public boolean canRedo() {
+        return mLastChild[mCurrent] != NONE;
+    }
+
+    // The move redo plays, packed. Playing it (so pushing it) is the redo.
+    public int getRedo() {
+        if (!canRedo()) {
+            throw new IllegalStateException("nothing to redo");
+        }
+        return mMove[mLastChild[mCurrent]];
+    }
+
+    public int getCurrent() {
+        return mCurrent;
+    }
+
+    // How many moves from the start node is.
+    public int getDepth(final int node) {
+        return mDepth[node];
+    }
+
+    // Keeps the board as a checkpoint if the current node is far enough from
+    // the last one. Only call it with the cards at rest, not part way through
+    // a move or an animation.
+    public void checkpoint(final Rules rules) {
+        int last = findCheckpoint(mDepth[mCurrent]);
+        if (last == NONE || mDepth[mCurrent] - mDepth[last] >= CHECKPOINT_EVERY) {
+            mBoard[mCurrent] = rules.packBoard();
+        }
+    }
+
+    // Puts rules (whose history this is) at the position after the first
+    // moves moves of the current line, or of the redo branch past its end.
+    // Going back restores the nearest checkpoint and redoes the rest, unless
+    // undoing is shorter, and checkpoints are taken on the way. Like undo and
+    // redo, nothing is posted.
+    public void seek(final Rules rules, final int moves) {
+        checkpoint(rules);
+        if (moves < size()) {
+            int node = findCheckpoint(moves);
+            if (node == NONE || size() - moves <= moves - mDepth[node]) {
+                while (size() > moves) {
+                    rules.undo();
+                    checkpoint(rules);
+                }
+                return;
+            }
+            // pop() leaves redo pointing back down this line
+            while (size() > mDepth[node]) {
+                pop();
+            }
+            rules.unpackBoard(mBoard[node]);
+        }
+        while (size() < moves && canRedo()) {
+            rules.applyMove(getRedo());
+            checkpoint(rules);
+        }
+    }
+
+    // The nearest node on the current line at most depth moves in that has a
+    // checkpoint, or NONE.
+    private int findCheckpoint(final int depth) {
+        int n = mCurrent;
+        while (n != NONE && (mDepth[n] > depth || mBoard[n] == null)) {
+            n = mParent[n];
+        }
+        return n;
+    }
+
+    // The ends of every line of play there's been, newest first. The current
+    // line is among them unless the current position is part way along it.
+    public int[] getBranches() {
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mFirstChild[i] == NONE && i != 0) {
+                count++;
+            }
+        }
+        int[] branches = new int[count];
+        for (int i = mCount - 1; i > 0; i--) {
+            if (mFirstChild[i] == NONE) {
+                branches[--count] = i;
+            }
+        }
+        // Filled from the back, so reverse
+        for (int i = 0, j = branches.length - 1; i < j; i++, j--) {
+            int swap = branches[i];
+            branches[i] = branches[j];
+            branches[j] = swap;
+        }
+        return branches;
+    }
+
+    // Points redo down the path to node all the way from the start, so once
+    // the game is undone to where the path leaves the current line (see
+    // getForkDepth), redoing gets to node.
+    public void select(final int node) {
+        for (int n = node; mParent[n] != NONE; n = mParent[n]) {
+            mLastChild[mParent[n]] = n;
+        }
+    }
+
+    // How many moves the current line and the path to node have in common,
+    // so how far back the game has to go before redo can get to node.
+    public int getForkDepth(final int node) {
+        int n = node;
+        int c = mCurrent;
+        while (mDepth[c] > mDepth[n]) {
+            c = mParent[c];
+        }
+        while (mDepth[n] > mDepth[c]) {
+            n = mParent[n];
+        }
+        while (n != c) {
+            n = mParent[n];
+            c = mParent[c];
+        }
+        return mDepth[n];
+    }
+
+    public void write(final ObjectOutput out) throws IOException {
+        out.writeInt(mCount);
+        for (int i = 1; i < mCount; i++) {
+            out.writeInt(mParent[i]);
+            out.writeInt(mMove[i]);
+        }
+        for (int i = 0; i < mCount; i++) {
+            out.writeInt(mLastChild[i]);
+        }
+        out.writeInt(mCurrent);
+        for (int i = 0; i < mCount; i++) {
+            if (mBoard[i] != null) {
+                out.writeInt(i);
+                out.writeInt(mBoard[i].length);
+                out.write(mBoard[i]);
+            }
+        }
+        out.writeInt(NONE);
+    }
+
+    // Replaces everything with what write() wrote, history included.
+    public void read(final ObjectInput in) throws IOException {
+        int count = in.readInt();
+        clear();
+        for (int i = 1; i < count; i++) {
+            int parent = in.readInt();
+            int packed = in.readInt();
+            if (parent < 0 || parent >= i) {
+                throw new IOException("bad undo tree");
+            }
+            newNode(parent, packed);
+        }
+        for (int i = 0; i < count; i++) {
+            mLastChild[i] = in.readInt();
+            if (mLastChild[i] < NONE || mLastChild[i] >= count) {
+                throw new IOException("bad undo tree");
+            }
+        }
+        int current = in.readInt();
+        if (current < 0 || current >= count) {
+            throw new IOException("bad undo tree");
+        }
+        // The history is the path down to current.
+        int depth = getDepth(current);
+        int[] path = new int[depth];
+        for (int n = current; mParent[n] != NONE; n = mParent[n]) {
+            path[--depth] = mMove[n];
+        }
+        for (int i = 0; i < path.length; i++) {
+            super.push(path[i]);
+        }
+        mCurrent = current;
+        for (int node = in.readInt(); node != NONE; node = in.readInt()) {
+            if (node < 0 || node >= count) {
+                throw new IOException("bad undo tree");
+            }
+            mBoard[node] = new byte[in.readInt()];
+            in.readFully(mBoard[node]);
+        }
+    }
+
+    private int newNode(final int parent, final int packed) {
+        if (mCount == mParent.length) {
+            mParent = grow(mParent);
+            mMove = grow(mMove);
+            mFirstChild = grow(mFirstChild);
+            mNextSibling = grow(mNextSibling);
+            mLastChild = grow(mLastChild);
+            mParentLast = grow(mParentLast);
+            mDepth = grow(mDepth);
+            boolean[] made = new boolean[mCount * 2];
+            System.arraycopy(mMade, 0, made, 0, mCount);
+            mMade = made;
+            byte[][] board = new byte[mCount * 2][];
+            System.arraycopy(mBoard, 0, board, 0, mCount);
+            mBoard = board;
+        }
+        int node = mCount++;
+        mParent[node] = parent;
+        mMove[node] = packed;
+        mFirstChild[node] = NONE;
+        mLastChild[node] = NONE;
+        mParentLast[node] = NONE;
+        mMade[node] = true;
+        mNextSibling[node] = NONE;
+        mDepth[node] = 0;
+        mBoard[node] = null;
+        if (parent != NONE) {
+            mDepth[node] = mDepth[parent] + 1;
+            mNextSibling[node] = mFirstChild[parent];
+            mFirstChild[parent] = node;
+        }
+        return node;
+    }
+
+    private static int[] grow(final int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+  
+       http://www.apache.org/licenses/LICENSE-2.0
+  
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package co.cutely.solitaire;
+
+// Zobrist keys for the board: a position's hash is the XOR of the key of
+// every (anchor, slot, card) in it plus one key per anchor for its hidden
+// count, so adding or taking a card is one XOR. Instead of a table of random
+// numbers (anchors * slots * cards longs) each key is a fixed scramble of
+// what it stands for, which costs no memory and gives the same hash for the
+// same position no matter how it was reached.
+final class Zobrist {
+
+    private static final long HIDDEN = 1L << 32;
+    private static final long EXTRA = 2L << 32;
+
+    private Zobrist() {
+    }
+
+    public static long card(final int anchor, final int idx, final int card) {
+        return mix(((long) anchor << 16) | (idx << 8) | card);
+    }
+
+    // No hidden cards is the same as an empty anchor, so it hashes to 0.
+    public static long hidden(final int anchor, final int count) {
+        return count == 0 ? 0 : mix(HIDDEN | ((long) anchor << 16) | count);
+    }
+
+    public static long extra(final int extra) {
+        return mix(EXTRA | (extra & 0xffffffffL));
+    }
+
+    // The SplitMix64 finalizer.
+    public static long mix(long z) {
+        z += 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}